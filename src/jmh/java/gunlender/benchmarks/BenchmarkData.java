@@ -0,0 +1,71 @@
+package gunlender.benchmarks;
+
+import gunlender.domain.entities.Gun;
+import gunlender.domain.entities.Weapon;
+import gunlender.infrastructure.database.Database;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeding and clean-up shared by the benchmarks that need a populated database file.
+ */
+final class BenchmarkData {
+    private static final int BATCH_SIZE = 10_000;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Inserts {@code rows} guns in batched writes, with the same values for the same seed.
+     */
+    static List<Gun> seedGuns(Database database, int rows, Random random) throws Exception {
+        var types = Weapon.WeaponType.values();
+        var seeded = new ArrayList<Gun>(rows);
+
+        for (int offset = 0; offset < rows; offset += BATCH_SIZE) {
+            var count = Math.min(BATCH_SIZE, rows - offset);
+            var batch = new Gun[count];
+
+            for (int i = 0; i < count; i++) {
+                batch[i] = new Gun("Producer " + random.nextInt(200), "Model " + random.nextInt(5_000),
+                        types[random.nextInt(types.length)], "9mm", random.nextInt(5_000) / 1000.0,
+                        random.nextInt(1_000), random.nextInt(50), random.nextInt(100_000) / 100.0,
+                        "https://example.com/" + random.nextInt(100_000) + ".png");
+            }
+
+            database.write(connection -> {
+                try (var statement = connection.prepareStatement(
+                        "insert into guns values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    for (var gun : batch) {
+                        database.getIdFormat().bind(statement, 1, gun.getId());
+                        statement.setString(2, gun.getProducer());
+                        statement.setString(3, gun.getModel());
+                        statement.setString(4, gun.getType().name());
+                        statement.setString(5, gun.getCaliber());
+                        statement.setDouble(6, gun.getWeight());
+                        statement.setInt(7, gun.getLength());
+                        statement.setInt(8, gun.getAmount());
+                        statement.setDouble(9, gun.getPrice());
+                        statement.setString(10, gun.getPicture());
+                        statement.addBatch();
+                    }
+                    return statement.executeBatch();
+                }
+            });
+
+            seeded.addAll(List.of(batch));
+        }
+
+        return seeded;
+    }
+
+    static void delete(Path file) throws Exception {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(Path.of(file + "-wal"));
+        Files.deleteIfExists(Path.of(file + "-shm"));
+    }
+}
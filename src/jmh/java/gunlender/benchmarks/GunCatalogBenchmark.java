@@ -0,0 +1,92 @@
+package gunlender.benchmarks;
+
+import gunlender.application.Page;
+import gunlender.application.PageRequest;
+import gunlender.application.dto.GunFilter;
+import gunlender.domain.entities.Gun;
+import gunlender.domain.entities.Weapon;
+import gunlender.infrastructure.database.CachingGunRepository;
+import gunlender.infrastructure.database.Database;
+import gunlender.infrastructure.database.DatabaseConfig;
+import gunlender.infrastructure.database.GunRepository;
+import gunlender.infrastructure.database.MigrationRunner;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The catalog queries behind the gun routes on tables of different sizes: the full listing from the database and
+ * from the cache, a lookup by id and the first filtered page. Run with
+ * {@code ./gradlew jmh -PjmhIncludes=GunCatalogBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GunCatalogBenchmark {
+    private static final int SAMPLES = 1024;
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private Path file;
+    private Database database;
+    private GunRepository repository;
+    private CachingGunRepository cachingRepository;
+    private UUID[] samples;
+    private GunFilter filter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = Files.createTempFile("gunlender-benchmark", ".db");
+        var config = DatabaseConfig.forEnvironment("production");
+        config.setUrl("jdbc:sqlite:" + file);
+        database = Database.open(config);
+        repository = new GunRepository(database);
+        cachingRepository = new CachingGunRepository(database);
+        new MigrationRunner(database).migrate(repository);
+
+        var random = new Random(42);
+        var guns = BenchmarkData.seedGuns(database, rows, random);
+        samples = new UUID[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            samples[i] = guns.get(random.nextInt(guns.size())).getId();
+        }
+
+        filter = new GunFilter();
+        filter.setType(Weapon.WeaponType.RIFLE);
+        filter.setAvailable(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+        BenchmarkData.delete(file);
+    }
+
+    @Benchmark
+    public List<Gun> allGuns() throws Exception {
+        return repository.getGuns();
+    }
+
+    @Benchmark
+    public List<Gun> allGunsCached() throws Exception {
+        return cachingRepository.getGuns();
+    }
+
+    @Benchmark
+    public Optional<Gun> byId() throws Exception {
+        return repository.getGunById(samples[ThreadLocalRandom.current().nextInt(SAMPLES)]);
+    }
+
+    @Benchmark
+    public Page<Gun> filteredPage() throws Exception {
+        return repository.getGuns(filter, PageRequest.first(PageRequest.DEFAULT_LIMIT));
+    }
+}
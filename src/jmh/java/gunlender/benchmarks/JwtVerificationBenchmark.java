@@ -0,0 +1,56 @@
+package gunlender.benchmarks;
+
+import gunlender.domain.services.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.Key;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of turning an Authorization header into claims: a parser built for every request as
+ * {@code JwtService} used to do, one shared parser verifying every time, and the verified-token cache, next to
+ * signing a new token at login. Run with {@code ./gradlew jmh -PjmhIncludes=JwtVerificationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtVerificationBenchmark {
+    private Key key;
+    private String header;
+    private JwtService uncached;
+    private JwtService cached;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+        uncached = new JwtService(key, 0);
+        cached = new JwtService(key, JwtService.DEFAULT_CACHE_SIZE);
+        header = "Bearer " + cached.generateJwt(UUID.randomUUID(), "someone@example.com", "standard_user");
+    }
+
+    @Benchmark
+    public String generate() {
+        return cached.generateJwt(UUID.randomUUID(), "someone@example.com", "standard_user");
+    }
+
+    @Benchmark
+    public Jws<Claims> parserPerRequest() {
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(header.split(" ")[1]);
+    }
+
+    @Benchmark
+    public Jws<Claims> sharedParser() {
+        return uncached.getClaims(header).orElseThrow();
+    }
+
+    @Benchmark
+    public Jws<Claims> verifiedTokenCache() {
+        return cached.getClaims(header).orElseThrow();
+    }
+}
@@ -0,0 +1,162 @@
+package gunlender.benchmarks;
+
+import gunlender.domain.entities.InstantColumns;
+import gunlender.domain.entities.Lending;
+import gunlender.infrastructure.database.Database;
+import gunlender.infrastructure.database.DatabaseConfig;
+import gunlender.infrastructure.database.IdFormat;
+import gunlender.infrastructure.database.LendingRepository;
+import gunlender.infrastructure.database.MigrationRunner;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup latency on the lendings table with and without the composite key and secondary indexes.
+ * Run with {@code ./gradlew jmh -PjmhIncludes=LendingLookupBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LendingLookupBenchmark {
+    private static final String LEGACY_DEFINITION = "(UserId VARCHAR(16), GunId VARCHAR(16), AmmoId VARCHAR(16), " +
+            "AmmoAmount INT, ReservationDate DATETIME, TotalPrice DECIMAL(10,2))";
+    private static final int SAMPLES = 1024;
+    private static final int BATCH_SIZE = 50_000;
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    @Param({"TEXT", "BLOB"})
+    public IdFormat idFormat;
+
+    private Path file;
+    private Database database;
+    private LendingRepository repository;
+    private Lending[] samples;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = Files.createTempFile("gunlender-benchmark", ".db");
+        var config = DatabaseConfig.forEnvironment("production");
+        config.setUrl("jdbc:sqlite:" + file);
+        config.setIdFormat(idFormat);
+        database = Database.open(config);
+        repository = new LendingRepository(database);
+
+        if (indexed) {
+            new MigrationRunner(database).migrate(repository);
+        } else {
+            database.write(connection -> {
+                try (var statement = connection.createStatement()) {
+                    return statement.executeUpdate("create table lendings " + LEGACY_DEFINITION);
+                }
+            });
+        }
+
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(Path.of(file + "-wal"));
+        Files.deleteIfExists(Path.of(file + "-shm"));
+    }
+
+    @Benchmark
+    public List<Lending> byUserId() throws Exception {
+        return repository.getLendingByUserId(sample().getUserId());
+    }
+
+    @Benchmark
+    public List<Lending> byGunId() throws Exception {
+        return repository.getLendingByGunId(sample().getGunId());
+    }
+
+    @Benchmark
+    public List<Lending> byAmmoId() throws Exception {
+        return repository.getLendingByAmmoId(sample().getAmmoId());
+    }
+
+    @Benchmark
+    public Optional<Lending> byKey() throws Exception {
+        var lending = sample();
+        return repository.getLending(lending.getUserId(), lending.getGunId(), lending.getAmmoId());
+    }
+
+    private Lending sample() {
+        return samples[ThreadLocalRandom.current().nextInt(SAMPLES)];
+    }
+
+    private void seed() throws Exception {
+        var random = new Random(42);
+        var userIds = randomIds(random, Math.max(1, rows / 20));
+        var gunIds = randomIds(random, 2_000);
+        var ammoIds = randomIds(random, 500);
+        var start = Instant.parse("2020-01-01T00:00:00Z");
+        samples = new Lending[SAMPLES];
+
+        for (int offset = 0; offset < rows; offset += BATCH_SIZE) {
+            var batch = new Lending[Math.min(BATCH_SIZE, rows - offset)];
+
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = new Lending(
+                        userIds[random.nextInt(userIds.length)],
+                        gunIds[random.nextInt(gunIds.length)],
+                        ammoIds[random.nextInt(ammoIds.length)],
+                        random.nextInt(100),
+                        start.plus(random.nextInt(1_500_000), ChronoUnit.MINUTES),
+                        random.nextInt(100_000) / 100.0
+                );
+            }
+
+            for (int i = 0; i < SAMPLES && offset == 0; i++) {
+                samples[i] = batch[i % batch.length];
+            }
+
+            database.write(connection -> {
+                try (var statement = connection.prepareStatement(
+                        "insert or ignore into lendings values (?, ?, ?, ?, ?, ?)")) {
+                    for (var lending : batch) {
+                        idFormat.bind(statement, 1, lending.getUserId());
+                        idFormat.bind(statement, 2, lending.getGunId());
+                        idFormat.bind(statement, 3, lending.getAmmoId());
+                        statement.setInt(4, lending.getAmmoAmount());
+                        statement.setString(5, InstantColumns.format(lending.getReservationDate()));
+                        statement.setDouble(6, lending.getTotalPrice());
+                        statement.addBatch();
+                    }
+                    return statement.executeBatch();
+                }
+            });
+        }
+
+        database.write(connection -> {
+            try (var statement = connection.createStatement()) {
+                return statement.executeUpdate("analyze");
+            }
+        });
+    }
+
+    private static UUID[] randomIds(Random random, int count) {
+        var ids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        return ids;
+    }
+}
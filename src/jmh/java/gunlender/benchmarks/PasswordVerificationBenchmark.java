@@ -0,0 +1,65 @@
+package gunlender.benchmarks;
+
+import gunlender.domain.services.CryptoService;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password verifications per second on a single thread, i.e. per core: the previous path that re-encoded a fresh
+ * hash from the shared {@code SecretKeyFactory} and compared strings, against {@link CryptoService} deriving raw
+ * bytes with a per-thread {@code Mac}. {@link #hashPassword()} is the cost of a registration or password change at
+ * the same iterations. Run with {@code ./gradlew jmh -PjmhIncludes=PasswordVerificationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+public class PasswordVerificationBenchmark {
+    private static final String PASSWORD = "SpecialPassword123!!@@";
+
+    @Param({"100", "10000"})
+    public int iterations;
+
+    private CryptoService cryptoService;
+    private SecretKeyFactory skf;
+    private String storedHash;
+    private byte[] salt;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        cryptoService = new CryptoService("PBKDF2WithHmacSHA1");
+        skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+
+        // Stored in the format without the algorithm, which both paths understand
+        salt = cryptoService.generateSalt();
+        var key = skf.generateSecret(new PBEKeySpec(PASSWORD.toCharArray(), salt, iterations, 64 * 8)).getEncoded();
+        storedHash = iterations + ":" + Base64.getEncoder().encodeToString(salt) + ":"
+                + Base64.getEncoder().encodeToString(key);
+    }
+
+    @Benchmark
+    public boolean rehashAndCompareStrings() throws Exception {
+        var parts = storedHash.split(":");
+        var rounds = Integer.parseInt(parts[0]);
+        var salt = Base64.getDecoder().decode(parts[1]);
+        var spec = new PBEKeySpec(PASSWORD.toCharArray(), salt, rounds, 64 * 8);
+        var hash = skf.generateSecret(spec).getEncoded();
+        var encoded = rounds + ":" + Base64.getEncoder().encodeToString(salt) + ":"
+                + Base64.getEncoder().encodeToString(hash);
+        return storedHash.equals(encoded);
+    }
+
+    @Benchmark
+    public boolean deriveAndCompareBytes() throws Exception {
+        return cryptoService.comparePasswordAndHash(PASSWORD, storedHash);
+    }
+
+    @Benchmark
+    public String hashPassword() throws Exception {
+        return cryptoService.hashPassword(PASSWORD, salt, iterations);
+    }
+}
@@ -0,0 +1,105 @@
+package gunlender.benchmarks;
+
+import gunlender.domain.entities.Gun;
+import gunlender.domain.entities.UuidColumns;
+import gunlender.domain.entities.Weapon;
+import gunlender.infrastructure.database.Database;
+import gunlender.infrastructure.database.DatabaseConfig;
+import gunlender.infrastructure.database.GunRepository;
+import gunlender.infrastructure.database.MigrationRunner;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of mapping every row of the guns table, reading columns by index as the entities do versus by name as
+ * they did before. Both read the same ten values and differ only in the column lookup, the repository benchmark
+ * measures the whole {@link Gun#fromResultSet} path. Run with {@code ./gradlew jmh -PjmhIncludes=RowMappingBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RowMappingBenchmark {
+    private static final String QUERY = "select " + Gun.COLUMNS + " from guns";
+
+    @Param({"100000"})
+    public int rows;
+
+    private Path file;
+    private Database database;
+    private GunRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = Files.createTempFile("gunlender-benchmark", ".db");
+        var config = DatabaseConfig.forEnvironment("production");
+        config.setUrl("jdbc:sqlite:" + file);
+        database = Database.open(config);
+        repository = new GunRepository(database);
+        new MigrationRunner(database).migrate(repository);
+
+        BenchmarkData.seedGuns(database, rows, new Random(42));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+        BenchmarkData.delete(file);
+    }
+
+    @Benchmark
+    public void byIndex(Blackhole blackhole) throws Exception {
+        database.read(connection -> {
+            try (var statement = connection.prepareStatement(QUERY)) {
+                var rs = statement.executeQuery();
+
+                while (rs.next()) {
+                    blackhole.consume(UuidColumns.read(rs, 1));
+                    blackhole.consume(rs.getString(2));
+                    blackhole.consume(rs.getString(3));
+                    blackhole.consume(Weapon.FromString(rs.getString(4)));
+                    blackhole.consume(rs.getString(5));
+                    blackhole.consume(rs.getDouble(6));
+                    blackhole.consume(rs.getInt(7));
+                    blackhole.consume(rs.getInt(8));
+                    blackhole.consume(rs.getDouble(9));
+                    blackhole.consume(rs.getString(10));
+                }
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void byName(Blackhole blackhole) throws Exception {
+        database.read(connection -> {
+            try (var statement = connection.prepareStatement(QUERY)) {
+                var rs = statement.executeQuery();
+
+                while (rs.next()) {
+                    blackhole.consume(UuidColumns.read(rs, "Id"));
+                    blackhole.consume(rs.getString("Producer"));
+                    blackhole.consume(rs.getString("Model"));
+                    blackhole.consume(Weapon.FromString(rs.getString("Type")));
+                    blackhole.consume(rs.getString("Caliber"));
+                    blackhole.consume(rs.getDouble("Weight"));
+                    blackhole.consume(rs.getInt("Length"));
+                    blackhole.consume(rs.getInt("Amount"));
+                    blackhole.consume(rs.getDouble("Price"));
+                    blackhole.consume(rs.getString("Picture"));
+                }
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    public List<Gun> repository() throws Exception {
+        return repository.getGuns();
+    }
+}
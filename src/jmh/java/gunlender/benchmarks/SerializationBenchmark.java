@@ -0,0 +1,63 @@
+package gunlender.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import gunlender.domain.entities.Gun;
+import gunlender.domain.entities.Lending;
+import gunlender.domain.entities.Weapon;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of gun and lending lists of the sizes the listing routes return, with the mapper
+ * configured as in {@code Main}. Run with {@code ./gradlew jmh -PjmhIncludes=SerializationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+    @Param({"100", "10000"})
+    public int size;
+
+    private ObjectWriter writer;
+    private List<Gun> guns;
+    private List<Lending> lendings;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        writer = new ObjectMapper().registerModule(new JavaTimeModule()).writer();
+
+        var random = new Random(42);
+        var types = Weapon.WeaponType.values();
+        var start = Instant.parse("2020-01-01T00:00:00Z");
+        guns = new ArrayList<>(size);
+        lendings = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            guns.add(new Gun("Producer " + random.nextInt(200), "Model " + random.nextInt(5_000),
+                    types[random.nextInt(types.length)], "9mm", random.nextInt(5_000) / 1000.0,
+                    random.nextInt(1_000), random.nextInt(50), random.nextInt(100_000) / 100.0,
+                    "https://example.com/" + random.nextInt(100_000) + ".png"));
+            lendings.add(new Lending(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), random.nextInt(100),
+                    start.plus(random.nextInt(1_500_000), ChronoUnit.MINUTES), random.nextInt(100_000) / 100.0));
+        }
+    }
+
+    @Benchmark
+    public byte[] guns() throws Exception {
+        return writer.writeValueAsBytes(guns);
+    }
+
+    @Benchmark
+    public byte[] lendings() throws Exception {
+        return writer.writeValueAsBytes(lendings);
+    }
+}
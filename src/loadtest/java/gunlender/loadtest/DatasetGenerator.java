@@ -0,0 +1,142 @@
+package gunlender.loadtest;
+
+import com.github.javafaker.Faker;
+import gunlender.domain.entities.InstantColumns;
+import gunlender.domain.entities.Weapon;
+import gunlender.domain.services.AuthManager;
+import gunlender.infrastructure.database.Database;
+import gunlender.infrastructure.database.IdFormat;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Fills a migrated database with Faker-generated users, guns, ammo and lendings, written in batches of
+ * {@value #BATCH_SIZE} rows per transaction so millions of rows take minutes rather than hours.
+ * <p>
+ * Every user shares one password hash, computing millions of them would take longer than the test. User
+ * {@code i} is {@code user<i>@gunlender.test}, and the first {@code admins} of them are administrators. Stock is
+ * large enough that rentals during a test never run out.
+ */
+final class DatasetGenerator {
+    static final int BATCH_SIZE = 10_000;
+
+    private final Database database;
+    private final IdFormat idFormat;
+    private final Faker faker;
+    private final Random random;
+
+    /**
+     * Ids of what was generated, for the workload to pick from. Users are indexed like their e-mail addresses.
+     */
+    record Dataset(UUID[] users, UUID[] guns, UUID[] ammo, int admins) {
+        static String email(int user) {
+            return "user" + user + "@gunlender.test";
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowBinder {
+        void bind(PreparedStatement statement, int row) throws SQLException;
+    }
+
+    DatasetGenerator(Database database, long seed) {
+        this.database = database;
+        this.idFormat = database.getIdFormat();
+        this.random = new Random(seed);
+        this.faker = new Faker(Locale.ENGLISH, random);
+    }
+
+    Dataset generate(int users, int admins, int guns, int ammo, int lendings, String passwordHash) throws Exception {
+        var userIds = randomIds(users);
+        var gunIds = randomIds(guns);
+        var ammoIds = randomIds(ammo);
+        var types = Weapon.WeaponType.values();
+        var calibers = new String[]{"9mm", ".45 ACP", "5.56x45mm", "7.62x39mm", "12 gauge", ".308 Win", ".22 LR"};
+
+        insert("users", "insert into users values " + values(7), users, (statement, i) -> {
+            idFormat.bind(statement, 1, userIds[i]);
+            statement.setString(2, faker.name().firstName());
+            statement.setString(3, faker.name().lastName());
+            statement.setString(4, Dataset.email(i));
+            statement.setString(5, passwordHash);
+            statement.setString(6, String.format("%09d", i));
+            statement.setString(7, (i < admins ? AuthManager.Role.ADMINISTRATOR : AuthManager.Role.STANDARD_USER)
+                    .name());
+        });
+
+        insert("guns", "insert into guns values " + values(10), guns, (statement, i) -> {
+            idFormat.bind(statement, 1, gunIds[i]);
+            statement.setString(2, faker.company().name());
+            statement.setString(3, faker.ancient().hero() + " " + faker.number().numberBetween(1, 99));
+            statement.setString(4, types[random.nextInt(types.length)].name());
+            statement.setString(5, calibers[random.nextInt(calibers.length)]);
+            statement.setDouble(6, faker.number().randomDouble(2, 1, 10));
+            statement.setInt(7, faker.number().numberBetween(150, 1300));
+            statement.setInt(8, 1_000_000);
+            statement.setDouble(9, faker.number().randomDouble(2, 10, 999));
+            statement.setString(10, "https://" + faker.internet().domainName() + "/" + i + ".png");
+        });
+
+        insert("ammo", "insert into ammo values " + values(5), ammo, (statement, i) -> {
+            idFormat.bind(statement, 1, ammoIds[i]);
+            statement.setString(2, calibers[random.nextInt(calibers.length)]);
+            statement.setInt(3, 100_000_000);
+            statement.setDouble(4, faker.number().randomDouble(2, 0, 9));
+            statement.setString(5, "https://" + faker.internet().domainName() + "/" + i + ".png");
+        });
+
+        var start = Instant.parse("2020-01-01T00:00:00Z");
+
+        // Random keys can repeat, a repeated one is skipped by "or ignore" and the table ends up slightly smaller
+        var lendingRows = users == 0 || guns == 0 || ammo == 0 ? 0 : lendings;
+        insert("lendings", "insert or ignore into lendings values " + values(6), lendingRows, (statement, i) -> {
+            idFormat.bind(statement, 1, userIds[random.nextInt(users)]);
+            idFormat.bind(statement, 2, gunIds[random.nextInt(guns)]);
+            idFormat.bind(statement, 3, ammoIds[random.nextInt(ammo)]);
+            statement.setInt(4, random.nextInt(100));
+            statement.setString(5, InstantColumns.format(start.plus(random.nextInt(3_000_000), ChronoUnit.MINUTES)));
+            statement.setDouble(6, random.nextInt(100_000) / 100.0);
+        });
+
+        return new Dataset(userIds, gunIds, ammoIds, admins);
+    }
+
+    private void insert(String table, String sql, int rows, RowBinder binder) throws Exception {
+        var started = System.nanoTime();
+
+        for (int offset = 0; offset < rows; offset += BATCH_SIZE) {
+            var first = offset;
+            var count = Math.min(BATCH_SIZE, rows - offset);
+
+            database.write(connection -> {
+                try (var statement = connection.prepareStatement(sql)) {
+                    for (int i = first; i < first + count; i++) {
+                        binder.bind(statement, i);
+                        statement.addBatch();
+                    }
+                    return statement.executeBatch();
+                }
+            });
+        }
+
+        System.out.printf("Seeded %d rows of %s in %.1f s%n", rows, table, (System.nanoTime() - started) / 1e9);
+    }
+
+    private static String values(int columns) {
+        return "(" + "?, ".repeat(columns - 1) + "?)";
+    }
+
+    private UUID[] randomIds(int count) {
+        var ids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        return ids;
+    }
+}
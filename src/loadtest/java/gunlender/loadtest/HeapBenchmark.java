@@ -0,0 +1,111 @@
+package gunlender.loadtest;
+
+import gunlender.Main;
+import gunlender.infrastructure.database.Database;
+import gunlender.infrastructure.database.DatabaseConfig;
+import gunlender.server.ThreadMode;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends catalog requests from many distinct clients to an in-process server and prints the heap in use after
+ * every tenth of them. The client keeps no cookies, so to the server every request is a new visitor. Without
+ * per-client state on the server the heap stays flat and no session cookie is ever handed out.
+ * <p>
+ * Run with {@code ./gradlew heapBenchmark -PloadTestArgs="clients"}, 100 000 clients by default.
+ */
+public class HeapBenchmark {
+    private static final int THREADS = 16;
+    private static final int CHECKPOINTS = 10;
+
+    public static void main(String[] args) throws Exception {
+        var clients = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        var file = Files.createTempFile("gunlender-heap", ".db");
+        var config = DatabaseConfig.forEnvironment("development");
+        config.setUrl("jdbc:sqlite:" + file);
+        var database = Database.open(config);
+
+        try {
+            var app = Main.start(database, ThreadMode.PLATFORM, 0);
+
+            try {
+                run(URI.create("http://localhost:" + app.port() + "/gun/"), clients);
+            } finally {
+                app.stop();
+            }
+        } finally {
+            database.close();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + "-wal"));
+            Files.deleteIfExists(Path.of(file + "-shm"));
+        }
+
+        System.exit(0);
+    }
+
+    private static void run(URI uri, int clients) throws InterruptedException {
+        var http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        var request = HttpRequest.newBuilder(uri).GET().build();
+        var step = Math.max(1, clients / CHECKPOINTS);
+        var sessionCookies = new LongAdder();
+        var errors = new LongAdder();
+
+        System.out.printf("%10s %14s %16s %8s%n", "clients", "heap used MiB", "session cookies", "errors");
+        System.out.printf("%10d %14.1f %16d %8d%n", 0, usedHeapMiB(), 0, 0);
+
+        for (int sent = 0; sent < clients; sent += step) {
+            var remaining = new AtomicInteger(Math.min(step, clients - sent));
+            var threads = new ArrayList<Thread>();
+
+            for (int i = 0; i < THREADS; i++) {
+                var thread = new Thread(() -> {
+                    while (remaining.getAndDecrement() > 0) {
+                        try {
+                            var response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors.increment();
+                            }
+                            if (response.headers().firstValue("Set-Cookie").isPresent()) {
+                                sessionCookies.increment();
+                            }
+                        } catch (Exception e) {
+                            errors.increment();
+                        }
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+
+            for (var thread : threads) {
+                thread.join();
+            }
+
+            System.out.printf("%10d %14.1f %16d %8d%n", Math.min(sent + step, clients), usedHeapMiB(),
+                    sessionCookies.sum(), errors.sum());
+        }
+    }
+
+    /**
+     * Heap left after a few full collections, which is what the server actually retains.
+     */
+    private static double usedHeapMiB() throws InterruptedException {
+        var memory = ManagementFactory.getMemoryMXBean();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+
+        return memory.getHeapMemoryUsage().getUsed() / (1024.0 * 1024.0);
+    }
+}
@@ -0,0 +1,64 @@
+package gunlender.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latencies of one client thread by route, kept apart from other threads so recording needs no synchronization.
+ * Samples taken before {@code measureFrom} belong to the warm-up and are dropped.
+ */
+final class LatencyRecorder {
+    private final long measureFrom;
+    private final Map<String, Samples> samples = new TreeMap<>();
+
+    LatencyRecorder(long measureFrom) {
+        this.measureFrom = measureFrom;
+    }
+
+    void record(String route, long startedNanos, long finishedNanos) {
+        if (startedNanos >= measureFrom) {
+            samples.computeIfAbsent(route, key -> new Samples()).add(finishedNanos - startedNanos);
+        }
+    }
+
+    Map<String, Samples> samples() {
+        return samples;
+    }
+
+    static final class Samples {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        String describe(String route, double seconds) {
+            var sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return String.format("  %-24s %9d  %9.1f/s  p50 %8.2f ms  p99 %8.2f ms  p999 %8.2f ms", route, size,
+                    size / seconds, percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999));
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package gunlender.loadtest;
+
+import gunlender.Main;
+import gunlender.domain.entities.Weapon;
+import gunlender.domain.services.CryptoService;
+import gunlender.domain.services.HashingPolicy;
+import gunlender.infrastructure.database.AmmoRepository;
+import gunlender.infrastructure.database.Database;
+import gunlender.infrastructure.database.DatabaseConfig;
+import gunlender.infrastructure.database.GunRepository;
+import gunlender.infrastructure.database.LendingRepository;
+import gunlender.infrastructure.database.MigrationRunner;
+import gunlender.infrastructure.database.UserRepository;
+import gunlender.server.ThreadMode;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end load test: seeds a database file with {@link DatasetGenerator}, then for each {@link ThreadMode}
+ * starts the server in process on it and drives a mixed workload from {@code clients} threads, printing
+ * throughput and p50, p99 and p999 latency per route.
+ * <p>
+ * Run with {@code ./gradlew loadTest -PloadTestArgs="users=1000000 guns=100000 clients=128 seconds=60"}. Every
+ * option has a default, see {@link Options#parse}. The first quarter of every run is warm-up and is not measured.
+ */
+public class LoadTest {
+    private static final String PASSWORD = "LoadTest123!";
+    private static final Weapon.WeaponType[] TYPES = Weapon.WeaponType.values();
+
+    private final Options options;
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    record Options(int users, int admins, int guns, int ammo, int lendings, int clients, Duration duration,
+                   List<ThreadMode> modes) {
+        /**
+         * Reads {@code name=value} arguments. Defaults are 10 000 users of which 10 administrators, 1 000 guns,
+         * 200 kinds of ammo, 50 000 lendings, 64 clients, 30 seconds and both thread modes.
+         */
+        static Options parse(String[] args) {
+            var values = new HashMap<String, String>();
+
+            for (var arg : args) {
+                var separator = arg.indexOf('=');
+                if (separator <= 0) {
+                    throw new IllegalArgumentException("Expected name=value, got " + arg);
+                }
+                values.put(arg.substring(0, separator).toLowerCase(Locale.ROOT), arg.substring(separator + 1));
+            }
+
+            var modes = values.containsKey("modes")
+                    ? Arrays.stream(values.remove("modes").split(","))
+                    .map(mode -> ThreadMode.valueOf(mode.trim().toUpperCase(Locale.ROOT))).toList()
+                    : List.of(ThreadMode.values());
+
+            var options = new Options(
+                    intOption(values, "users", 10_000),
+                    intOption(values, "admins", 10),
+                    intOption(values, "guns", 1_000),
+                    intOption(values, "ammo", 200),
+                    intOption(values, "lendings", 50_000),
+                    intOption(values, "clients", 64),
+                    Duration.ofSeconds(intOption(values, "seconds", 30)),
+                    modes);
+
+            if (!values.isEmpty()) {
+                throw new IllegalArgumentException("Unknown options " + values.keySet());
+            }
+            if (options.admins() < 1 || options.users() < options.admins() + options.clients()) {
+                throw new IllegalArgumentException("Needs an administrator and a standard user for every client");
+            }
+            if (options.guns() < 1 || options.ammo() < 1) {
+                throw new IllegalArgumentException("Needs at least one gun and one kind of ammo");
+            }
+
+            return options;
+        }
+
+        private static int intOption(Map<String, String> values, String name, int defaultValue) {
+            var value = values.remove(name);
+            return value == null ? defaultValue : Integer.parseInt(value.replace("_", ""));
+        }
+    }
+
+    private record Client(UUID userId, String token) {
+    }
+
+    private record Lent(UUID gunId, UUID ammoId) {
+    }
+
+    public LoadTest(Options options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = Options.parse(args);
+        var file = Files.createTempFile("gunlender-loadtest", ".db");
+
+        try {
+            var test = new LoadTest(options);
+            var policy = HashingPolicy.fromEnvironment();
+            var dataset = test.seed(file, new CryptoService(policy).hashPassword(PASSWORD));
+            var reports = new ArrayList<String>();
+
+            for (var mode : options.modes()) {
+                reports.add(test.run(file, policy, mode, dataset));
+            }
+
+            System.out.printf("%n%s%n", options);
+            reports.forEach(System.out::print);
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + "-wal"));
+            Files.deleteIfExists(Path.of(file + "-shm"));
+        }
+
+        System.exit(0);
+    }
+
+    private DatasetGenerator.Dataset seed(Path file, String passwordHash) throws Exception {
+        try (var database = Database.open(config(file, ThreadMode.PLATFORM))) {
+            new MigrationRunner(database).migrate(new UserRepository(database), new AmmoRepository(database),
+                    new GunRepository(database), new LendingRepository(database));
+
+            return new DatasetGenerator(database, 42).generate(options.users(), options.admins(), options.guns(),
+                    options.ammo(), options.lendings(), passwordHash);
+        }
+    }
+
+    private static DatabaseConfig config(Path file, ThreadMode mode) {
+        var config = DatabaseConfig.forEnvironment("development");
+        config.setUrl("jdbc:sqlite:" + file);
+
+        if (mode == ThreadMode.VIRTUAL && config.getMaxConcurrency() == 0) {
+            config.setMaxConcurrency(4 * config.getPool().getMaximumPoolSize());
+        }
+
+        return config;
+    }
+
+    /**
+     * The same data serves every mode. Rentals a run leaves open stay in the database, which the stock is large
+     * enough to absorb.
+     */
+    public String run(Path file, HashingPolicy policy, ThreadMode mode, DatasetGenerator.Dataset dataset)
+            throws Exception {
+        try (var database = Database.open(config(file, mode))) {
+            var app = Main.start(database, policy, mode, 0);
+
+            try {
+                var baseUri = "http://localhost:" + app.port() + "/";
+                var admin = login(baseUri, dataset, 0);
+                var clients = new ArrayList<Client>();
+
+                // Each client rents as its own standard user, so the lendings it returns are always its own
+                for (int i = 0; i < options.clients(); i++) {
+                    clients.add(login(baseUri, dataset, dataset.admins() + i));
+                }
+
+                return measure(mode, baseUri, dataset, admin, clients);
+            } finally {
+                app.stop();
+            }
+        }
+    }
+
+    private Client login(String baseUri, DatasetGenerator.Dataset dataset, int user) throws Exception {
+        var response = http.send(loginRequest(baseUri, user), HttpResponse.BodyHandlers.discarding());
+
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Cannot log in user " + user + ": " + response.statusCode());
+        }
+
+        return new Client(dataset.users()[user], response.headers().firstValue("Authorization").orElseThrow());
+    }
+
+    private static HttpRequest loginRequest(String baseUri, int user) {
+        var body = String.format("{\"email\":\"%s\",\"password\":\"%s\"}", DatasetGenerator.Dataset.email(user),
+                PASSWORD);
+        return HttpRequest.newBuilder(URI.create(baseUri + "login"))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private String measure(ThreadMode mode, String baseUri, DatasetGenerator.Dataset dataset, Client admin,
+                           List<Client> clients) throws InterruptedException {
+        var start = System.nanoTime();
+        var measureFrom = start + options.duration().toNanos() / 4;
+        var deadline = start + options.duration().toNanos();
+        var errors = new ConcurrentHashMap<String, LongAdder>();
+        var recorders = new ArrayList<LatencyRecorder>();
+        var threads = new ArrayList<Thread>();
+
+        for (var client : clients) {
+            var recorder = new LatencyRecorder(measureFrom);
+            var workload = new Workload(baseUri, dataset, admin, client, recorder, errors);
+            recorders.add(recorder);
+            threads.add(new Thread(() -> workload.run(deadline)));
+        }
+
+        threads.forEach(Thread::start);
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        var seconds = (deadline - measureFrom) / 1e9;
+        var byRoute = new TreeMap<String, LatencyRecorder.Samples>();
+        var all = new LatencyRecorder.Samples();
+
+        for (var recorder : recorders) {
+            recorder.samples().forEach((route, samples) -> {
+                byRoute.computeIfAbsent(route, key -> new LatencyRecorder.Samples()).addAll(samples);
+                all.addAll(samples);
+            });
+        }
+
+        var totalErrors = errors.values().stream().mapToLong(LongAdder::sum).sum();
+        var report = new StringBuilder(String.format("%n%s: %.0f req/s, %d errors%n", mode, all.size() / seconds,
+                totalErrors));
+        report.append(all.describe("all", seconds)).append('\n');
+        byRoute.forEach((route, samples) -> {
+            var routeErrors = errors.get(route);
+            report.append(samples.describe(route, seconds))
+                    .append(routeErrors == null ? "" : "  errors " + routeErrors.sum())
+                    .append('\n');
+        });
+        return report.toString();
+    }
+
+    /**
+     * One client's request mix: 35% anonymous catalog pages, 15% anonymous gun details, 5% anonymous ammo pages,
+     * 7% logins, 13% rentals, 10% returns, 8% own lendings and 7% administrator listings of lendings and users.
+     */
+    private final class Workload {
+        private final String baseUri;
+        private final DatasetGenerator.Dataset dataset;
+        private final Client admin;
+        private final Client client;
+        private final LatencyRecorder recorder;
+        private final Map<String, LongAdder> errors;
+        private final ArrayDeque<Lent> lent = new ArrayDeque<>();
+
+        Workload(String baseUri, DatasetGenerator.Dataset dataset, Client admin, Client client,
+                 LatencyRecorder recorder, Map<String, LongAdder> errors) {
+            this.baseUri = baseUri;
+            this.dataset = dataset;
+            this.admin = admin;
+            this.client = client;
+            this.recorder = recorder;
+            this.errors = errors;
+        }
+
+        void run(long deadline) {
+            var random = ThreadLocalRandom.current();
+
+            while (System.nanoTime() < deadline) {
+                var roll = random.nextInt(100);
+
+                try {
+                    if (roll < 35) {
+                        var query = random.nextBoolean() ? "?limit=50" : "?limit=50&type=" + pick(TYPES).name().toLowerCase(Locale.ROOT);
+                        send("GET gun/ (page)", get("gun/" + query, null));
+                    } else if (roll < 50) {
+                        send("GET gun/{id}", get("gun/" + pick(dataset.guns()), null));
+                    } else if (roll < 55) {
+                        send("GET ammo/ (page)", get("ammo/?limit=50", null));
+                    } else if (roll < 62) {
+                        var user = random.nextInt(dataset.admins(), dataset.users().length);
+                        send("POST login", loginRequest(baseUri, user));
+                    } else if (roll < 75 || (roll < 85 && lent.isEmpty())) {
+                        rent();
+                    } else if (roll < 85) {
+                        giveBack();
+                    } else if (roll < 93) {
+                        send("GET lending/", get("lending/", client.token()));
+                    } else if (random.nextBoolean()) {
+                        send("GET lending/ (admin page)", get("lending/?limit=50", admin.token()));
+                    } else {
+                        send("GET user/ (admin page)", get("user/?limit=50", admin.token()));
+                    }
+                } catch (Exception e) {
+                    errors.computeIfAbsent("exceptions", key -> new LongAdder()).increment();
+                }
+            }
+        }
+
+        private void rent() throws Exception {
+            var gunId = pick(dataset.guns());
+            var ammoId = pick(dataset.ammo());
+            var body = String.format("{\"userId\":\"%s\",\"gunId\":\"%s\",\"ammoId\":\"%s\",\"ammoAmount\":%d," +
+                    "\"reservationDate\":\"%s\"}", client.userId(), gunId, ammoId,
+                    ThreadLocalRandom.current().nextInt(1, 50), Instant.now());
+            var request = HttpRequest.newBuilder(URI.create(baseUri + "lending/"))
+                    .header("Authorization", client.token())
+                    .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+
+            if (send("POST lending/", request)) {
+                lent.add(new Lent(gunId, ammoId));
+            }
+        }
+
+        private void giveBack() throws Exception {
+            var lending = lent.poll();
+            var request = HttpRequest.newBuilder(URI.create(baseUri + "lending/" + client.userId() +
+                            "?gun=" + lending.gunId() + "&ammo=" + lending.ammoId()))
+                    .header("Authorization", client.token())
+                    .DELETE().build();
+
+            send("DELETE lending/{id}", request);
+        }
+
+        private HttpRequest get(String path, String token) {
+            var builder = HttpRequest.newBuilder(URI.create(baseUri + path)).GET();
+            if (token != null) {
+                builder.header("Authorization", token);
+            }
+            return builder.build();
+        }
+
+        private boolean send(String route, HttpRequest request) throws Exception {
+            var started = System.nanoTime();
+            var response = http.send(request, HttpResponse.BodyHandlers.discarding());
+            recorder.record(route, started, System.nanoTime());
+
+            var ok = response.statusCode() < 300;
+            if (!ok) {
+                errors.computeIfAbsent(route, key -> new LongAdder()).increment();
+            }
+            return ok;
+        }
+
+        private <T> T pick(T[] values) {
+            return values[ThreadLocalRandom.current().nextInt(values.length)];
+        }
+    }
+}
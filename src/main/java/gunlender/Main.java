@@ -1,87 +1,174 @@
 package gunlender;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import gunlender.domain.exceptions.CryptoException;
 import gunlender.domain.exceptions.RepositoryException;
 import gunlender.domain.services.AuthManager;
 import gunlender.domain.services.CryptoService;
+import gunlender.domain.services.HashingPolicy;
 import gunlender.domain.services.JwtService;
+import gunlender.domain.services.PasswordHasher;
 import gunlender.infrastructure.database.AmmoRepository;
-import gunlender.infrastructure.database.GunRepository;
+import gunlender.infrastructure.database.CachingGunRepository;
+import gunlender.infrastructure.database.Database;
+import gunlender.infrastructure.database.DatabaseConfig;
 import gunlender.infrastructure.database.LendingRepository;
+import gunlender.infrastructure.database.MigrationRunner;
 import gunlender.infrastructure.database.UserRepository;
+import gunlender.infrastructure.metrics.Collector;
+import gunlender.infrastructure.metrics.JvmMetrics;
+import gunlender.infrastructure.metrics.MetricsRegistry;
+import gunlender.server.RequestMetrics;
+import gunlender.server.ThreadMode;
+import gunlender.server.VirtualThreadPool;
 import gunlender.server.routes.*;
 import io.javalin.Javalin;
+import io.javalin.json.JavalinJackson;
+import org.eclipse.jetty.server.Server;
 import org.slf4j.LoggerFactory;
 
 import javax.crypto.SecretKeyFactory;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Optional;
 
 import static io.javalin.apibuilder.ApiBuilder.*;
 
 public class Main {
 
     public static void main(String[] args) {
+        var databaseConfig = DatabaseConfig.fromEnvironment();
+        var threadMode = ThreadMode.fromEnvironment();
+
+        // Nothing else bounds how many virtual threads reach the database at once
+        if (threadMode == ThreadMode.VIRTUAL && databaseConfig.getMaxConcurrency() == 0) {
+            databaseConfig.setMaxConcurrency(4 * databaseConfig.getPool().getMaximumPoolSize());
+        }
+
+        var database = Database.open(databaseConfig);
+        Runtime.getRuntime().addShutdownHook(new Thread(database::close));
+
+        start(database, threadMode, 8080);
+    }
+
+    /**
+     * Migrates the database and starts serving the API on the given port, hashing new passwords under the policy
+     * from the environment.
+     */
+    public static Javalin start(Database database, ThreadMode threadMode, int port) {
+        HashingPolicy policy = null;
+
+        try {
+            policy = HashingPolicy.fromEnvironment();
+            SecretKeyFactory.getInstance(policy.algorithm());
+        } catch (NoSuchAlgorithmException | CryptoException | IllegalArgumentException e) {
+            LoggerFactory.getLogger(Main.class).error("Cannot create CryptoService", e);
+            System.exit(1);
+        }
+
+        return start(database, policy, threadMode, port);
+    }
+
+    /**
+     * Same as above with an explicit hashing policy, e.g. for a load test that seeds hashes under it up front.
+     */
+    public static Javalin start(Database database, HashingPolicy policy, ThreadMode threadMode, int port) {
         var logger = LoggerFactory.getLogger(Main.class);
-        var connectionStr = "jdbc:sqlite:gunlender.db";
 
-        var userRepo = new UserRepository(connectionStr);
-        var ammoRepo = new AmmoRepository(connectionStr);
-        var gunRepo = new GunRepository(connectionStr);
-        var lendingRepo = new LendingRepository(connectionStr);
+        var userRepo = new UserRepository(database);
+        var ammoRepo = new AmmoRepository(database);
+        var gunRepo = new CachingGunRepository(database);
+        var lendingRepo = new LendingRepository(database);
 
         try {
-            userRepo.migrate();
-            ammoRepo.migrate();
-            gunRepo.migrate();
-            lendingRepo.migrate();
+            new MigrationRunner(database).migrate(userRepo, ammoRepo, gunRepo, lendingRepo);
         } catch (RepositoryException e) {
             logger.error("Cannot migrate repository", e);
             System.exit(1);
         }
 
-        var cryptoService = new CryptoService();
+        var cryptoService = new CryptoService(policy);
         var jwtService = new JwtService();
+        logger.info("Hashing new passwords with {} at {} iterations, {} bit keys", policy.algorithm(),
+                policy.iterations(), policy.keyLength());
 
-        try {
-            var skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
-            cryptoService.setSkf(skf);
-        } catch (NoSuchAlgorithmException e) {
-            logger.error("Cannot create CryptoService", e);
-            System.exit(1);
+        var passwordHasher = PasswordHasher.fromEnvironment(cryptoService);
+        Runtime.getRuntime().addShutdownHook(new Thread(passwordHasher::close));
+
+        var objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        var authManager = new AuthManager(jwtService);
+
+        var metrics = new MetricsRegistry();
+        var requestMetrics = metrics.register(new RequestMetrics());
+        metrics.register(database.getCallTimings());
+        metrics.register(authFailures(authManager));
+        metrics.register(new JvmMetrics());
+
+        var threadPool = threadMode == ThreadMode.VIRTUAL
+                ? VirtualThreadPool.create()
+                : Optional.<VirtualThreadPool>empty();
+        if (threadMode == ThreadMode.VIRTUAL && threadPool.isEmpty()) {
+            logger.warn("This JVM has no virtual threads, handling requests on platform threads");
         }
 
-        var app = Javalin.create(config -> config.plugins.enableCors(cors -> cors.add(it -> {
-            it.anyHost();
-            it.exposeHeader("Authorization");
-            it.exposeHeader("UserRole");
-        })));
-        app.cfg.accessManager(new AuthManager(jwtService));
+        var app = Javalin.create(config -> {
+            threadPool.ifPresent(pool -> config.jetty.server(() -> new Server(pool)));
+            config.jsonMapper(new JavalinJackson(objectMapper));
+            config.requestLogger.http(requestMetrics::record);
+            config.plugins.enableCors(cors -> cors.add(it -> {
+                it.anyHost();
+                it.exposeHeader("Authorization");
+                it.exposeHeader("UserRole");
+                it.exposeHeader(PageParameters.NEXT_CURSOR_HEADER);
+            }));
+        });
+        app.cfg.accessManager(authManager);
+        requestMetrics.track(app);
         app.routes(() -> {
             get("health_check", new HealthCheckHandler(), AuthManager.Role.ANYONE);
+            // Metrics expose traffic, pool and hashing internals, a scraper authenticates as an administrator
+            get("metrics", new PrometheusMetricsHandler(metrics), AuthManager.Role.ADMINISTRATOR);
+            get("metrics/database", new DatabaseMetricsHandler(database), AuthManager.Role.ADMINISTRATOR);
+            get("metrics/cache", new CacheMetricsHandler(gunRepo), AuthManager.Role.ADMINISTRATOR);
+            get("metrics/hashing", new HashingMetricsHandler(passwordHasher), AuthManager.Role.ADMINISTRATOR);
             get("me", new UserInfoHandler(userRepo), AuthManager.Role.STANDARD_USER, AuthManager.Role.ADMINISTRATOR);
-            post("register", new RegisterHandler(userRepo, cryptoService), AuthManager.Role.ANYONE);
-            post("login", new LoginHandler(userRepo, cryptoService, jwtService), AuthManager.Role.ANYONE);
-            patch("user/{user-id}/password/", new ChangePasswordHandler(cryptoService, userRepo),
+            post("register", new RegisterHandler(userRepo, passwordHasher), AuthManager.Role.ANYONE);
+            post("login", new LoginHandler(userRepo, passwordHasher, jwtService), AuthManager.Role.ANYONE);
+            patch("user/{user-id}/password/", new ChangePasswordHandler(passwordHasher, userRepo),
                     AuthManager.Role.STANDARD_USER, AuthManager.Role.ADMINISTRATOR);
             patch("user/{user-id}/role/", new ChangeRoleHandler(userRepo), AuthManager.Role.ADMINISTRATOR);
-            crud("user/{user-id}", new UserController(userRepo), AuthManager.Role.STANDARD_USER,
+            crud("user/{user-id}", new UserController(userRepo, objectMapper), AuthManager.Role.STANDARD_USER,
                     AuthManager.Role.ADMINISTRATOR);
-            crud("ammo/{ammo-id}", new AmmoController(ammoRepo), AuthManager.Role.STANDARD_USER,
+            crud("ammo/{ammo-id}", new AmmoController(ammoRepo, objectMapper), AuthManager.Role.STANDARD_USER,
                     AuthManager.Role.ADMINISTRATOR);
-            crud("gun/{gun-id}", new GunController(gunRepo), AuthManager.Role.STANDARD_USER,
+            crud("gun/{gun-id}", new GunController(gunRepo, objectMapper), AuthManager.Role.STANDARD_USER,
                     AuthManager.Role.ADMINISTRATOR, AuthManager.Role.ANYONE);
-            crud("lending/{lending-id}", new LendingController(lendingRepo, gunRepo, ammoRepo, userRepo),
+            crud("lending/{lending-id}", new LendingController(database, lendingRepo, gunRepo, ammoRepo, objectMapper),
                     AuthManager.Role.STANDARD_USER, AuthManager.Role.ADMINISTRATOR);
         });
 
-        app.exception(RepositoryException.class, (ex, ctx) -> {
-            logger.error("Repository error", ex);
-            ctx.status(500);
-        });
+        app.exception(RepositoryException.class,
+                (ex, ctx) -> DatabaseFailure.respond(ctx, logger, "Repository error", ex));
         app.exception(CryptoException.class, (ex, ctx) -> {
             logger.error("Cryptography error", ex);
             ctx.status(500);
         });
-        app.start(8080);
+        threadPool.ifPresent(pool -> app.events(events -> events.serverStopped(pool::close)));
+
+        return app.start(port);
+    }
+
+    private static Collector authFailures(AuthManager authManager) {
+        return writer -> {
+            var stats = authManager.getStats();
+            var name = "gunlender_auth_failures_total";
+            var reason = List.of("reason");
+
+            writer.header(name, "counter", "Requests with a rejected token or refused by the access manager")
+                    .sample(name, reason, List.of("invalid_token"), stats.invalidTokens())
+                    .sample(name, reason, List.of("missing_credentials"), stats.missingCredentials())
+                    .sample(name, reason, List.of("insufficient_role"), stats.insufficientRole());
+        };
     }
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package gunlender.application;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the sort key of the last row of a page into an opaque, URL safe cursor and back.
+ */
+public class Cursor {
+    private static final String SEPARATOR = "\n";
+
+    private Cursor() {}
+
+    public static String encode(String... values) {
+        var joined = String.join(SEPARATOR, values);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(joined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String[] decode(String cursor, int expectedValues) {
+        String joined;
+
+        try {
+            joined = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+
+        var values = joined.split(SEPARATOR, -1);
+        if (values.length != expectedValues) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+
+        return values;
+    }
+}
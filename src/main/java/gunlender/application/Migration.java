@@ -0,0 +1,47 @@
+package gunlender.application;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Single, ordered schema change owned by a repository. Once released a migration must never be edited; its
+ * checksum is recorded when applied and verified on every startup.
+ */
+public record Migration(int version, String description, List<String> statements, Step step) {
+
+    @FunctionalInterface
+    public interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    public static Migration sql(int version, String description, String... statements) {
+        return new Migration(version, description, List.of(statements), null);
+    }
+
+    /**
+     * Migration that needs code, e.g. to backfill or rebuild a table. Only the description takes part in the
+     * checksum, so it should name what the step does.
+     */
+    public static Migration code(int version, String description, Step step) {
+        return new Migration(version, description, List.of(), step);
+    }
+
+    public String checksum() {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(description.getBytes(StandardCharsets.UTF_8));
+            for (var statement : statements) {
+                digest.update((byte) '\n');
+                digest.update(statement.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
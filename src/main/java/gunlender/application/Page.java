@@ -0,0 +1,22 @@
+package gunlender.application;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a listing. The next cursor is null on the last page.
+ */
+public record Page<T>(List<T> items, String nextCursor) {
+    /**
+     * Builds a page from rows fetched with a limit of one more than the page size, where the extra row only tells
+     * whether there is a next page.
+     */
+    public static <T> Page<T> fromRows(List<T> rows, int limit, Function<T, String> cursorOf) {
+        if (rows.size() <= limit) {
+            return new Page<>(rows, null);
+        }
+
+        var items = rows.subList(0, limit);
+        return new Page<>(items, cursorOf.apply(items.get(limit - 1)));
+    }
+}
@@ -0,0 +1,21 @@
+package gunlender.application;
+
+/**
+ * Requested page of a keyset paginated listing. The cursor is the opaque value returned with the previous page,
+ * or null for the first one.
+ */
+public record PageRequest(String cursor, int limit) {
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    public PageRequest {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            var msg = String.format("Page size must be between 1 and %d", MAX_LIMIT);
+            throw new IllegalArgumentException(msg);
+        }
+    }
+
+    public static PageRequest first(int limit) {
+        return new PageRequest(null, limit);
+    }
+}
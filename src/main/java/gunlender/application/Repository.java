@@ -1,7 +1,20 @@
 package gunlender.application;
 
-import gunlender.domain.exceptions.RepositoryException;
+import java.util.List;
 
 public interface Repository {
-    void migrate() throws RepositoryException;
+    /**
+     * Name under which this repository's migrations are tracked in the schema_version table.
+     */
+    String getSchemaName();
+
+    /**
+     * All migrations of this repository, in ascending version order.
+     */
+    List<Migration> getMigrations();
+
+    /**
+     * Columns of the table named by {@link #getSchemaName()} that hold UUIDs.
+     */
+    List<String> getIdColumns();
 }
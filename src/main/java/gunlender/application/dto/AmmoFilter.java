@@ -0,0 +1,13 @@
+package gunlender.application.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class AmmoFilter {
+    private String caliber;
+    private Boolean available;
+    private Double minPrice;
+    private Double maxPrice;
+}
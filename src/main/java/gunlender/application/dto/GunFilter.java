@@ -0,0 +1,15 @@
+package gunlender.application.dto;
+
+import gunlender.domain.entities.Weapon;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class GunFilter {
+    private Weapon.WeaponType type;
+    private String caliber;
+    private Boolean available;
+    private Double minPrice;
+    private Double maxPrice;
+}
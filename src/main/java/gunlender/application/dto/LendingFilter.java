@@ -0,0 +1,15 @@
+package gunlender.application.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Getter
+@Setter
+public class LendingFilter {
+    private UUID userId;
+    private Instant reservedFrom;
+    private Instant reservedTo;
+}
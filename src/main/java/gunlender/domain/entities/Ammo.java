@@ -8,15 +8,15 @@ import java.util.UUID;
 
 @Getter
 public class Ammo {
+    /** Select list for {@link #fromResultSet(ResultSet)}, id first. */
+    public static final String COLUMNS = "Id, Caliber, Amount, Price, Picture";
+
     private UUID id;
     private String caliber;
     private int amount;
     private double price;
     private String picture;
 
-    private static final String SQL_DEFINITION = "(Id VARCHAR(16) UNIQUE, Caliber VARCHAR(32), Amount INT, " +
-            "Price DECIMAL(3,2), Picture VARCHAR(256))";
-
 
     public Ammo(String caliber, int amount, double price, String picture) {
         this.id = UUID.randomUUID();
@@ -31,19 +31,15 @@ public class Ammo {
     public static Ammo fromResultSet(ResultSet rs) throws SQLException {
         var ammo = new Ammo();
 
-        ammo.id = UUID.fromString(rs.getString("Id"));
-        ammo.caliber = rs.getString("Caliber");
-        ammo.amount = rs.getInt("Amount");
-        ammo.price = rs.getDouble("Price");
-        ammo.picture = rs.getString("Picture");
+        ammo.id = UuidColumns.read(rs, 1);
+        ammo.caliber = rs.getString(2);
+        ammo.amount = rs.getInt(3);
+        ammo.price = rs.getDouble(4);
+        ammo.picture = rs.getString(5);
 
         return ammo;
     }
 
-    public static String toSqlTableDefinition() {
-        return SQL_DEFINITION;
-    }
-
     @Override
     public String toString() {
         return "Ammo{" +
@@ -8,6 +8,9 @@ import java.util.UUID;
 
 @Getter
 public class Gun {
+    /** Guns table columns in declaration order, which {@link #fromResultSet(ResultSet)} reads by position. */
+    public static final String COLUMNS = "Id, Producer, Model, Type, Caliber, Weight, Length, Amount, Price, Picture";
+
     private UUID id;
     private String producer;
     private String model;
@@ -19,10 +22,6 @@ public class Gun {
     private double price;
     private String picture;
 
-    private static final String SQL_DEFINITION = "(Id VARCHAR(16) UNIQUE, Producer VARCHAR(128), Model VARCHAR(64), " +
-            "Type VARCHAR(64), Caliber VARCHAR(32), Weight DOUBLE, Length INT, Amount INT, Price DECIMAL(5,2), " +
-            "Picture VARCHAR(256))";
-
     public Gun(String producer, String model, Weapon.WeaponType type, String caliber, double weight,
                int length, int amount, double price, String picture) {
         this.id = UUID.randomUUID();
@@ -42,24 +41,20 @@ public class Gun {
     public static Gun fromResultSet(ResultSet rs) throws SQLException {
         var gun = new Gun();
 
-        gun.id = UUID.fromString(rs.getString("Id"));
-        gun.producer = rs.getString("Producer");
-        gun.model = rs.getString("Model");
-        gun.type = Weapon.FromString(rs.getString("Type"));
-        gun.caliber = rs.getString("Caliber");
-        gun.weight = rs.getDouble("Weight");
-        gun.length = rs.getInt("Length");
-        gun.amount = rs.getInt("Amount");
-        gun.price = rs.getDouble("Price");
-        gun.picture = rs.getString("Picture");
+        gun.id = UuidColumns.read(rs, 1);
+        gun.producer = rs.getString(2);
+        gun.model = rs.getString(3);
+        gun.type = Weapon.FromString(rs.getString(4));
+        gun.caliber = rs.getString(5);
+        gun.weight = rs.getDouble(6);
+        gun.length = rs.getInt(7);
+        gun.amount = rs.getInt(8);
+        gun.price = rs.getDouble(9);
+        gun.picture = rs.getString(10);
 
         return gun;
     }
 
-    public static String toSqlTableDefinition() {
-        return SQL_DEFINITION;
-    }
-
     @Override
     public String toString() {
         return "Gun{" +
@@ -0,0 +1,22 @@
+package gunlender.domain.entities;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Encodes DATETIME columns as UTC text with a fixed nine digit fraction. With every value the same width, text
+ * comparison orders them by time, which {@link Instant#toString()} does not: it drops zero fractions, and
+ * "10:00:00.5Z" sorts before "10:00:00Z".
+ */
+public class InstantColumns {
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter
+            .ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSSSSSSS'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    private InstantColumns() {}
+
+    public static String format(Instant instant) {
+        return FORMAT.format(instant);
+    }
+}
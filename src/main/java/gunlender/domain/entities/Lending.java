@@ -9,6 +9,9 @@ import java.util.UUID;
 
 @Getter
 public class Lending {
+    /** The three key ids, then amount, date and price, as {@link #fromResultSet(ResultSet)} reads them. */
+    public static final String COLUMNS = "UserId, GunId, AmmoId, AmmoAmount, ReservationDate, TotalPrice";
+
     private UUID userId;
     private UUID gunId;
     private UUID ammoId;
@@ -16,9 +19,6 @@ public class Lending {
     private Instant reservationDate;
     private double totalPrice;
 
-    private static final String SQL_DEFINITION = "(UserId VARCHAR(16), GunId VARCHAR(16), AmmoId VARCHAR(16), " +
-            "AmmoAmount INT, ReservationDate DATETIME, TotalPrice DECIMAL(10,2))";
-
     public Lending(UUID userId, UUID gunId, UUID ammoId, int ammoAmount, Instant reservationDate, double totalPrice) {
         this.userId = userId;
         this.gunId = gunId;
@@ -33,20 +33,16 @@ public class Lending {
     public static Lending fromResultSet(ResultSet rs) throws SQLException {
         var lending = new Lending();
 
-        lending.userId = UUID.fromString(rs.getString("UserId"));
-        lending.gunId = UUID.fromString(rs.getString("GunId"));
-        lending.ammoId = UUID.fromString(rs.getString("AmmoId"));
-        lending.ammoAmount = rs.getInt("AmmoAmount");
-        lending.reservationDate = Instant.parse(rs.getString("ReservationDate"));
-        lending.totalPrice = rs.getDouble("TotalPrice");
+        lending.userId = UuidColumns.read(rs, 1);
+        lending.gunId = UuidColumns.read(rs, 2);
+        lending.ammoId = UuidColumns.read(rs, 3);
+        lending.ammoAmount = rs.getInt(4);
+        lending.reservationDate = Instant.parse(rs.getString(5));
+        lending.totalPrice = rs.getDouble(6);
 
         return lending;
     }
 
-    public static String toSqlTableDefinition() {
-        return SQL_DEFINITION;
-    }
-
     @Override
     public String toString() {
         return "Lending{" +
@@ -9,6 +9,9 @@ import java.util.UUID;
 
 @Getter
 public class User {
+    /** User columns in {@link #fromResultSet(ResultSet)} order, password hash included. */
+    public static final String COLUMNS = "Id, FirstName, LastName, Email, PasswordHash, PhoneNumber, AccountType";
+
     private UUID id;
     private String firstName;
     private String lastName;
@@ -17,10 +20,6 @@ public class User {
     private String passwordHash;
     private AuthManager.Role accountType;
 
-    private static final String SQL_DEFINITION = "(Id VARCHAR(16) UNIQUE, FirstName VARCHAR(64), " +
-            "LastName VARCHAR(128), Email VARCHAR(64) UNIQUE, PasswordHash VARCHAR(512), " +
-            "PhoneNumber VARCHAR(9) UNIQUE, AccountType VARCHAR(32))";
-
     public User(String firstName, String lastName, String email, String phoneNumber, String passwordHash,
                 AuthManager.Role type) {
         this.id = UUID.randomUUID();
@@ -37,21 +36,17 @@ public class User {
     public static User fromResultSet(ResultSet rs) throws SQLException {
         var user = new User();
 
-        user.id = UUID.fromString(rs.getString("Id"));
-        user.firstName = rs.getString("FirstName");
-        user.lastName = rs.getString("LastName");
-        user.email = rs.getString("Email");
-        user.passwordHash = rs.getString("PasswordHash");
-        user.phoneNumber = rs.getString("PhoneNumber");
-        user.accountType = AuthManager.roleFromString(rs.getString("AccountType"));
+        user.id = UuidColumns.read(rs, 1);
+        user.firstName = rs.getString(2);
+        user.lastName = rs.getString(3);
+        user.email = rs.getString(4);
+        user.passwordHash = rs.getString(5);
+        user.phoneNumber = rs.getString(6);
+        user.accountType = AuthManager.roleFromString(rs.getString(7));
 
         return user;
     }
 
-    public static String toSqlTableDefinition() {
-        return SQL_DEFINITION;
-    }
-
     @Override
     public String toString() {
         return "User{" +
@@ -0,0 +1,50 @@
+package gunlender.domain.entities;
+
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * Reads and encodes UUID columns, which are stored either as 36 character text or as 16 byte blobs.
+ */
+public class UuidColumns {
+    private UuidColumns() {}
+
+    /**
+     * Reads the id in whichever format it was stored, so rows can be mapped while a database is being converted.
+     */
+    public static UUID read(ResultSet rs, String column) throws SQLException {
+        return fromValue(rs.getObject(column));
+    }
+
+    public static UUID read(ResultSet rs, int index) throws SQLException {
+        return fromValue(rs.getObject(index));
+    }
+
+    private static UUID fromValue(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof byte[] bytes) {
+            return fromBytes(bytes);
+        }
+        return UUID.fromString(value.toString());
+    }
+
+    public static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    public static UUID fromBytes(byte[] bytes) {
+        if (bytes.length != 16) {
+            throw new IllegalArgumentException(String.format("Expected 16 byte id, got %d bytes", bytes.length));
+        }
+
+        var buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
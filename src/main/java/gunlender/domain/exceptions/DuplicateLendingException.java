@@ -0,0 +1,12 @@
+package gunlender.domain.exceptions;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown when a user already rents the same gun with the same ammo, which the lendings key allows only once.
+ */
+public class DuplicateLendingException extends RepositoryException {
+    public DuplicateLendingException(String msg, SQLException ex) {
+        super(msg, ex);
+    }
+}
@@ -0,0 +1,11 @@
+package gunlender.domain.exceptions;
+
+/**
+ * Thrown inside a write when there is nothing left to reserve. Failing the write rolls back whatever the same
+ * unit of work already changed.
+ */
+public class OutOfStockException extends RepositoryException {
+    public OutOfStockException(String msg) {
+        super(msg);
+    }
+}
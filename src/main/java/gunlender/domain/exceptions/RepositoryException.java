@@ -6,4 +6,8 @@ public class RepositoryException extends Exception {
     public RepositoryException(String msg, SQLException ex) {
         super(msg, ex);
     }
+
+    public RepositoryException(String msg) {
+        super(msg);
+    }
 }
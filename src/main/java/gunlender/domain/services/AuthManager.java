@@ -8,10 +8,16 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.Locale;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
 
 public class AuthManager implements AccessManager {
+    public static final String PRINCIPAL_ATTRIBUTE = "Principal";
 
     private final JwtService jwtService;
+    private final LongAdder invalidTokens = new LongAdder();
+    private final LongAdder missingCredentials = new LongAdder();
+    private final LongAdder insufficientRole = new LongAdder();
 
     public AuthManager(JwtService jwtService) {
         this.jwtService = jwtService;
@@ -20,34 +26,39 @@ public class AuthManager implements AccessManager {
 
     @Override
     public void manage(@NotNull Handler handler, @NotNull Context ctx, @NotNull Set<? extends RouteRole> set) throws Exception {
-        var userInfo = getUserInfo(ctx);
+        var principal = authenticate(ctx);
 
-        if (set.contains(userInfo.Role)) {
-            ctx.sessionAttribute("Role", roleToString(userInfo.Role));
-            ctx.sessionAttribute("Email", userInfo.Email);
+        if (set.contains(principal.role())) {
+            // Request attribute only, a session attribute would make Jetty keep a session for every client
+            ctx.attribute(PRINCIPAL_ATTRIBUTE, principal);
             handler.handle(ctx);
         } else {
+            (principal == Principal.ANONYMOUS ? missingCredentials : insufficientRole).increment();
             ctx.status(401).result("Unauthorized");
         }
     }
 
-    private UserInfo getUserInfo(Context ctx) {
+    private Principal authenticate(Context ctx) {
         var jwt = ctx.header("Authorization");
 
         if (jwt != null) {
             var claims = jwtService.getClaims(jwt);
             if (claims.isPresent()) {
-                var role = claims.get().getBody().get("Role", String.class);
-                var subject = claims.get().getBody().getSubject();
-                return new UserInfo(roleFromString(role), subject);
+                var body = claims.get().getBody();
+                var userId = body.get("UserId", String.class);
+
+                if (userId != null) {
+                    var role = body.get("Role", String.class);
+                    return new Principal(UUID.fromString(userId), body.getSubject(), roleFromString(role));
+                }
             }
+
+            invalidTokens.increment();
         }
 
-        return new UserInfo(Role.ANYONE, "");
+        return Principal.ANONYMOUS;
     }
 
-    private record UserInfo(Role Role, String Email) {}
-
     public enum Role implements RouteRole {
         ANYONE, STANDARD_USER, ADMINISTRATOR
     }
@@ -68,11 +79,30 @@ public class AuthManager implements AccessManager {
         };
     }
 
+    /**
+     * Principal the current request was authorized as, anonymous for routes outside the access manager.
+     */
+    public static Principal getPrincipal(Context ctx) {
+        Principal principal = ctx.attribute(PRINCIPAL_ATTRIBUTE);
+        return principal == null ? Principal.ANONYMOUS : principal;
+    }
+
+    /**
+     * A request with an invalid token continues as anonymous, so it is counted both as an invalid token and, when
+     * the route is not open to anyone, as missing credentials.
+     */
+    public Stats getStats() {
+        return new Stats(invalidTokens.sum(), missingCredentials.sum(), insufficientRole.sum());
+    }
+
+    public record Stats(long invalidTokens, long missingCredentials, long insufficientRole) {
+    }
+
     public static boolean isLoggedUserAdmin(Context ctx) {
-        return ctx.sessionAttribute("Role") == AuthManager.roleToString(Role.ADMINISTRATOR);
+        return getPrincipal(ctx).role() == Role.ADMINISTRATOR;
     }
 
     public static boolean isLogged(Context ctx) {
-        return ctx.sessionAttribute("Role") != AuthManager.roleToString(Role.ANYONE);
+        return getPrincipal(ctx).role() != Role.ANYONE;
     }
 }
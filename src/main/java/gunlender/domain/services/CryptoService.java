@@ -4,29 +4,54 @@ import gunlender.domain.exceptions.CryptoException;
 import lombok.Getter;
 import lombok.Setter;
 
+import javax.crypto.Mac;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
 import java.util.Base64;
-
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hashes are stored as {@code algorithm:iterations:salt:key}. Hashes written before the algorithm was recorded,
+ * {@code iterations:salt:key}, are read as {@link HashingPolicy#LEGACY} PBKDF2 with HMAC-SHA1.
+ * <p>
+ * PBKDF2 keys are derived by hand with the matching HMAC, which gives the same bytes as the
+ * {@code SecretKeyFactory} without a key spec, a key object and a cloned password per call. Other algorithms
+ * always go through the factory.
+ */
 public class CryptoService {
+    private static final String PBKDF2_PREFIX = "PBKDF2With";
+
     private final SecureRandom rng;
-    private final int keyLength;
-    @Setter
+    // Mac lookups go through the provider list, so each thread keeps the ones it used
+    private final ThreadLocal<Map<String, Mac>> macs = ThreadLocal.withInitial(HashMap::new);
     @Getter
-    private SecretKeyFactory skf;
+    @Setter
+    private HashingPolicy policy;
 
     public CryptoService() {
         this.rng = new SecureRandom();
-        this.keyLength = 64 * 8;
     }
 
+    /**
+     * Policy with the given algorithm at the {@link HashingPolicy#LEGACY} cost.
+     */
     public CryptoService(String algorithmName) throws NoSuchAlgorithmException {
+        this(new HashingPolicy(algorithmName, HashingPolicy.LEGACY.iterations(), HashingPolicy.LEGACY.keyLength()));
+        SecretKeyFactory.getInstance(algorithmName);
+    }
+
+    public CryptoService(HashingPolicy policy) {
         this.rng = new SecureRandom();
-        this.keyLength = 64 * 8;
-        this.skf = SecretKeyFactory.getInstance(algorithmName);
+        this.policy = policy;
     }
 
     public byte[] generateSalt() {
@@ -37,42 +62,158 @@ public class CryptoService {
 
     public String hashPassword(String password) throws CryptoException {
         var salt = generateSalt();
-        return hashPassword(password, salt, 100);
+        return hashPassword(password, salt, requirePolicy().iterations());
     }
 
 
     public String hashPassword(String password, byte[] salt) throws CryptoException {
-        return hashPassword(password, salt, 100);
+        return hashPassword(password, salt, requirePolicy().iterations());
     }
 
     public String hashPassword(String password, byte[] salt, int iterations) throws CryptoException {
-        if (skf == null) {
-            throw new CryptoException("SecretKeyFactory is not set!");
+        var current = requirePolicy();
+        var hash = deriveKey(current.algorithm(), password, salt, iterations, current.keyLength() / 8);
+        return current.algorithm() + ":" + iterations + ":" + toBase64(salt) + ":" + toBase64(hash);
+    }
+
+    /**
+     * Derives a key of the stored length and compares the raw bytes in constant time, without re-encoding the
+     * result.
+     */
+    public  boolean comparePasswordAndHash(String password, String hash) throws CryptoException {
+        var stored = parseHash(hash);
+        var derived = deriveKey(stored.algorithm(), password, stored.salt(), stored.iterations(),
+                stored.key().length);
+        return MessageDigest.isEqual(derived, stored.key());
+    }
+
+    /**
+     * Whether a stored hash was made under a different algorithm or key length, or is clearly cheaper than the
+     * current policy.
+     */
+    public boolean needsRehash(String hash) throws CryptoException {
+        var stored = parseHash(hash);
+        var current = requirePolicy();
+
+        return !stored.algorithm().equals(current.algorithm())
+                || current.isStrongerThan(stored.iterations())
+                || stored.key().length * 8 != current.keyLength();
+    }
+
+    private HashingPolicy requirePolicy() throws CryptoException {
+        if (policy == null) {
+            throw new CryptoException("Hashing policy is not set!");
         }
+        return policy;
+    }
+
+    private byte[] deriveKey(String algorithm, String password, byte[] salt, int iterations, int length)
+            throws CryptoException {
+        var passwordBytes = password.getBytes(StandardCharsets.UTF_8);
 
         try {
-            var spec = new PBEKeySpec(password.toCharArray(), salt, iterations, keyLength);
-            var hash = skf.generateSecret(spec).getEncoded();
-            return iterations + ":" + toBase64(salt) + ":" + toBase64(hash);
+            // An HMAC key cannot be empty, the factory handles that case
+            if (!algorithm.startsWith(PBKDF2_PREFIX) || passwordBytes.length == 0) {
+                var spec = new PBEKeySpec(password.toCharArray(), salt, iterations, length * 8);
+                return SecretKeyFactory.getInstance(algorithm).generateSecret(spec).getEncoded();
+            }
+
+            return pbkdf2(mac(algorithm.substring(PBKDF2_PREFIX.length())), passwordBytes, salt, iterations, length);
         } catch (InvalidKeySpecException ex) {
             throw new CryptoException("Cannot hash password because key is invalid", ex);
         } catch (Exception ex) {
             throw new CryptoException("Cannot hash password", ex);
+        } finally {
+            Arrays.fill(passwordBytes, (byte) 0);
         }
     }
 
+    private Mac mac(String algorithm) throws NoSuchAlgorithmException {
+        var cached = macs.get();
+        var mac = cached.get(algorithm);
 
-    public  boolean comparePasswordAndHash(String password, String hash) throws CryptoException {
-        var hashInfo = getHashInfo(hash);
-        var newHash = hashPassword(password, hashInfo.salt, hashInfo.iterations);
-        return hash.equals(newHash);
+        if (mac == null) {
+            mac = Mac.getInstance(algorithm);
+            cached.put(algorithm, mac);
+        }
+
+        return mac;
+    }
+
+    /**
+     * PBKDF2 as in RFC 8018, section 5.2, reusing two block buffers for all iterations.
+     */
+    private static byte[] pbkdf2(Mac mac, byte[] password, byte[] salt, int iterations, int length)
+            throws GeneralSecurityException {
+        mac.init(new SecretKeySpec(password, mac.getAlgorithm()));
+
+        var blockLength = mac.getMacLength();
+        var result = new byte[length];
+        var u = new byte[blockLength];
+        var t = new byte[blockLength];
+
+        for (int block = 1, offset = 0; offset < length; block++, offset += blockLength) {
+            mac.update(salt);
+            mac.update((byte) (block >>> 24));
+            mac.update((byte) (block >>> 16));
+            mac.update((byte) (block >>> 8));
+            mac.update((byte) block);
+            mac.doFinal(u, 0);
+            System.arraycopy(u, 0, t, 0, blockLength);
+
+            for (int i = 1; i < iterations; i++) {
+                mac.update(u);
+                mac.doFinal(u, 0);
+
+                for (int j = 0; j < blockLength; j++) {
+                    t[j] ^= u[j];
+                }
+            }
+
+            System.arraycopy(t, 0, result, offset, Math.min(blockLength, length - offset));
+        }
+
+        return result;
     }
 
-    public static HashInfo getHashInfo(String hash) {
-        var hashParts = hash.split(":");
-        var iterations = Integer.parseInt(hashParts[0]);
-        var salt = fromBase64(hashParts[1]);
-        return new HashInfo(iterations, salt);
+    private static StoredHash parseHash(String hash) throws CryptoException {
+        String algorithm;
+        int start;
+
+        if (!hash.isEmpty() && Character.isDigit(hash.charAt(0))) {
+            algorithm = HashingPolicy.LEGACY.algorithm();
+            start = 0;
+        } else {
+            var colon = hash.indexOf(':');
+            if (colon <= 0) {
+                throw new CryptoException("Stored password hash is malformed");
+            }
+            algorithm = hash.substring(0, colon);
+            start = colon + 1;
+        }
+
+        var first = hash.indexOf(':', start);
+        var second = hash.indexOf(':', first + 1);
+
+        if (first <= start || second < 0) {
+            throw new CryptoException("Stored password hash is malformed");
+        }
+
+        StoredHash stored;
+        try {
+            stored = new StoredHash(algorithm, Integer.parseInt(hash, start, first, 10),
+                    fromBase64(hash.substring(first + 1, second)),
+                    fromBase64(hash.substring(second + 1)));
+        } catch (IllegalArgumentException ex) {
+            throw new CryptoException("Stored password hash is malformed", ex);
+        }
+
+        // An empty key would match every password
+        if (stored.iterations() < 1 || stored.key().length == 0) {
+            throw new CryptoException("Stored password hash is malformed");
+        }
+
+        return stored;
     }
 
     private static String toBase64(byte[] bytes) {
@@ -83,6 +224,6 @@ public class CryptoService {
         return Base64.getDecoder().decode(encoded);
     }
 
-    public record HashInfo(int iterations, byte[] salt) {
+    private record StoredHash(String algorithm, int iterations, byte[] salt, byte[] key) {
     }
 }
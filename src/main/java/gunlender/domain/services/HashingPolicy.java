@@ -0,0 +1,85 @@
+package gunlender.domain.services;
+
+import gunlender.domain.exceptions.CryptoException;
+
+/**
+ * How new password hashes are made. Hashes stored under an older policy keep verifying and are replaced with one
+ * under the current policy the next time their owner logs in.
+ *
+ * @param keyLength derived key length in bits
+ */
+public record HashingPolicy(String algorithm, int iterations, int keyLength) {
+    public static final HashingPolicy LEGACY = new HashingPolicy("PBKDF2WithHmacSHA1", 100, 512);
+    public static final String DEFAULT_ALGORITHM = "PBKDF2WithHmacSHA256";
+    public static final int DEFAULT_KEY_LENGTH = 256;
+    public static final long DEFAULT_TARGET_MILLIS = 100;
+    public static final int REHASH_MARGIN_PERCENT = 20;
+
+    private static final int MINIMUM_ITERATIONS = 10_000;
+    private static final int PROBE_ITERATIONS = 20_000;
+
+    public HashingPolicy {
+        if (algorithm == null || algorithm.isBlank()) {
+            throw new IllegalArgumentException("Hashing algorithm is required");
+        }
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Iterations must be at least 1");
+        }
+        if (keyLength < 8 || keyLength % 8 != 0) {
+            throw new IllegalArgumentException("Key length must be a positive multiple of 8 bits");
+        }
+    }
+
+    /**
+     * Uses GUNLENDER_HASH_ITERATIONS when set, otherwise calibrates the iterations so one hash takes about
+     * GUNLENDER_HASH_TARGET_MS on this machine.
+     */
+    public static HashingPolicy fromEnvironment() throws CryptoException {
+        var algorithm = System.getenv().getOrDefault("GUNLENDER_HASH_ALGORITHM", DEFAULT_ALGORITHM);
+        var keyLength = intFromEnv("GUNLENDER_HASH_KEY_LENGTH", DEFAULT_KEY_LENGTH);
+        var iterations = intFromEnv("GUNLENDER_HASH_ITERATIONS", 0);
+
+        if (iterations > 0) {
+            return new HashingPolicy(algorithm, iterations, keyLength);
+        }
+
+        return calibrate(algorithm, keyLength, intFromEnv("GUNLENDER_HASH_TARGET_MS", (int) DEFAULT_TARGET_MILLIS));
+    }
+
+    /**
+     * Times a few probe hashes and scales the iterations linearly to the budget, rounded to thousands. Never goes
+     * below {@value #MINIMUM_ITERATIONS} however slow the machine is.
+     */
+    public static HashingPolicy calibrate(String algorithm, int keyLength, long targetMillis) throws CryptoException {
+        var crypto = new CryptoService(new HashingPolicy(algorithm, PROBE_ITERATIONS, keyLength));
+        var salt = crypto.generateSalt();
+        var fastest = Long.MAX_VALUE;
+
+        // The first rounds include class loading and JIT compilation, the fastest one is closest to steady state
+        for (int i = 0; i < 5; i++) {
+            var start = System.nanoTime();
+            crypto.hashPassword("calibration", salt);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+
+        var perIteration = (double) Math.max(fastest, 1) / PROBE_ITERATIONS;
+        var iterations = Math.round(targetMillis * 1_000_000 / perIteration / 1000) * 1000;
+
+        return new HashingPolicy(algorithm, (int) Math.max(MINIMUM_ITERATIONS, Math.min(iterations, Integer.MAX_VALUE)),
+                keyLength);
+    }
+
+    /**
+     * Whether a hash made with the given iterations is cheap enough under this policy to be worth replacing.
+     * Calibration is measured again on every start, so counts within {@value #REHASH_MARGIN_PERCENT}% of the
+     * policy are kept instead of rehashing every user after a slightly faster boot.
+     */
+    public boolean isStrongerThan(int storedIterations) {
+        return (long) storedIterations * 100 < (long) iterations * (100 - REHASH_MARGIN_PERCENT);
+    }
+
+    static int intFromEnv(String name, int defaultValue) {
+        var value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
@@ -7,27 +7,48 @@ import org.slf4j.LoggerFactory;
 
 import java.security.Key;
 import java.util.Calendar;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JwtService {
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
     private final Logger logger = LoggerFactory.getLogger(JwtService.class);
     private final Key key;
+    private final JwtParser parser;
+    private final int cacheSize;
+    // Tokens whose signature already checked out, until they expire
+    private final Map<String, VerifiedToken> verified = new ConcurrentHashMap<>();
+
+    private record VerifiedToken(Jws<Claims> claims, long expiresAtMillis) {}
 
     public JwtService() {
-        key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+        this(Keys.secretKeyFor(SignatureAlgorithm.HS256), DEFAULT_CACHE_SIZE);
     }
 
-    public String generateJwt(String userEmail, String role) {
+    /**
+     * @param cacheSize maximum number of verified tokens remembered, 0 verifies every token on every request
+     */
+    public JwtService(Key key, int cacheSize) {
+        this.key = key;
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.cacheSize = cacheSize;
+    }
+
+    public String generateJwt(UUID userId, String userEmail, String role) {
         var date = Calendar.getInstance();
         date.add(Calendar.MINUTE, 400);
         var expTime = date.getTime();
-        return Jwts.builder().setSubject(userEmail).claim("Role", role).setExpiration(expTime).signWith(key).compact();
+        return Jwts.builder().setSubject(userEmail).claim("UserId", userId.toString()).claim("Role", role)
+                .setExpiration(expTime).signWith(key).compact();
     }
 
 
     public boolean verifyJwt(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJwt(token);
+            parser.parseClaimsJwt(token);
         } catch (JwtException ex) {
             logger.error("Cannot parse JWT token", ex);
             return false;
@@ -36,14 +57,62 @@ public class JwtService {
         return true;
     }
 
+    /**
+     * Claims of a bearer token. A token seen before is answered from memory until its expiration, so only the
+     * first request carrying it pays for the signature check and parsing.
+     */
     public Optional<Jws<Claims>> getClaims(String token) {
+        var jwt = token.split(" ")[1];
+        var cached = verified.get(jwt);
+
+        if (cached != null) {
+            if (System.currentTimeMillis() < cached.expiresAtMillis()) {
+                return Optional.of(cached.claims());
+            }
+            verified.remove(jwt, cached);
+        }
+
         try {
-            var jwt = token.split(" ")[1];
-            var claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(jwt);
+            var claims = parser.parseClaimsJws(jwt);
+            remember(jwt, claims);
             return Optional.of(claims);
         } catch (JwtException ex) {
             logger.error("Cannot parse JWT token", ex);
             return Optional.empty();
         }
     }
+
+    public int getCachedTokens() {
+        return verified.size();
+    }
+
+    private void remember(String jwt, Jws<Claims> claims) {
+        var expiration = claims.getBody().getExpiration();
+
+        // Tokens without an expiration are never cached, the cache would have no way to let go of them
+        if (cacheSize == 0 || expiration == null) {
+            return;
+        }
+
+        if (verified.size() >= cacheSize) {
+            evict();
+        }
+
+        verified.put(jwt, new VerifiedToken(claims, expiration.getTime()));
+    }
+
+    /**
+     * Drops expired tokens and, if that is not enough, arbitrary ones down to three quarters of the capacity, so a
+     * full cache is swept once per many insertions instead of on every one.
+     */
+    private void evict() {
+        var now = System.currentTimeMillis();
+        verified.values().removeIf(token -> token.expiresAtMillis() <= now);
+
+        var iterator = verified.keySet().iterator();
+        while (verified.size() > cacheSize * 3 / 4 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
 }
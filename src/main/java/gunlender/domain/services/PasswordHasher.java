@@ -0,0 +1,171 @@
+package gunlender.domain.services;
+
+import gunlender.domain.exceptions.CryptoException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the {@link CryptoService} password operations on a fixed number of worker threads, so a burst of logins
+ * cannot occupy every request thread with PBKDF2.
+ * <p>
+ * At most {@code queueCapacity} operations wait for a worker. Beyond that the returned future fails right away
+ * with a {@link RejectedExecutionException}, which callers should report as the service being busy.
+ * <p>
+ * Futures are completed on a separate callback pool, so whatever callers chain onto them, such as writing the new
+ * hash to the database, never holds up a hashing worker.
+ */
+public class PasswordHasher implements AutoCloseable {
+    private final CryptoService cryptoService;
+    private final ThreadPoolExecutor executor;
+    private final ExecutorService callbacks;
+    private final int queueCapacity;
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+
+    @FunctionalInterface
+    private interface CryptoWork<T> {
+        T execute() throws CryptoException;
+    }
+
+    public PasswordHasher(CryptoService cryptoService, int threads, int queueCapacity) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Hashing needs at least one thread and one queue slot");
+        }
+
+        var counter = new AtomicInteger();
+        var callbackCounter = new AtomicInteger();
+        this.cryptoService = cryptoService;
+        this.queueCapacity = queueCapacity;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    var thread = new Thread(runnable, "password-hasher-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.callbacks = Executors.newCachedThreadPool(runnable -> {
+            var thread = new Thread(runnable, "password-callback-" + callbackCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Uses half of the processors by default, leaving the rest to request handling.
+     */
+    public static PasswordHasher fromEnvironment(CryptoService cryptoService) {
+        var threads = HashingPolicy.intFromEnv("GUNLENDER_HASH_THREADS",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        var queueCapacity = HashingPolicy.intFromEnv("GUNLENDER_HASH_QUEUE_SIZE", 64);
+        return new PasswordHasher(cryptoService, threads, queueCapacity);
+    }
+
+    public CompletableFuture<String> hashPassword(String password) {
+        return submit(() -> cryptoService.hashPassword(password));
+    }
+
+    public CompletableFuture<Boolean> comparePasswordAndHash(String password, String hash) {
+        return submit(() -> cryptoService.comparePasswordAndHash(password, hash));
+    }
+
+    /**
+     * Cheap enough to answer on the calling thread, it only parses the stored hash.
+     */
+    public boolean needsRehash(String hash) throws CryptoException {
+        return cryptoService.needsRehash(hash);
+    }
+
+    /**
+     * Whether a failure of one of the returned futures means the queue was full rather than a hashing error.
+     */
+    public static boolean isRejected(Throwable failure) {
+        var cause = failure;
+        while (cause != null && !(cause instanceof RejectedExecutionException)) {
+            cause = cause.getCause();
+        }
+        return cause != null;
+    }
+
+    public Stats getStats() {
+        var completed = completedCount.sum();
+
+        return new Stats(
+                executor.getPoolSize(),
+                executor.getActiveCount(),
+                executor.getQueue().size(),
+                queueCapacity,
+                completed,
+                rejectedCount.sum(),
+                TimeUnit.NANOSECONDS.toMillis(waitNanos.sum()),
+                completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(hashNanos.sum() / completed) / 1000.0,
+                TimeUnit.NANOSECONDS.toMillis(maxHashNanos.get())
+        );
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        callbacks.shutdown();
+    }
+
+    private <T> CompletableFuture<T> submit(CryptoWork<T> work) {
+        var future = new CompletableFuture<T>();
+        var enqueuedNanos = System.nanoTime();
+
+        try {
+            executor.execute(() -> {
+                var startedNanos = System.nanoTime();
+                waitNanos.add(startedNanos - enqueuedNanos);
+                T result = null;
+                Exception failure = null;
+
+                try {
+                    result = work.execute();
+                } catch (CryptoException | RuntimeException ex) {
+                    failure = ex;
+                }
+
+                // Counted before completing, so a caller that has joined the future sees it in the stats
+                var elapsed = System.nanoTime() - startedNanos;
+                hashNanos.add(elapsed);
+                maxHashNanos.accumulateAndGet(elapsed, Math::max);
+                completedCount.increment();
+                complete(future, result, failure);
+            });
+        } catch (RejectedExecutionException ex) {
+            rejectedCount.increment();
+            future.completeExceptionally(ex);
+        }
+
+        return future;
+    }
+
+    private <T> void complete(CompletableFuture<T> future, T result, Exception failure) {
+        try {
+            callbacks.execute(() -> {
+                if (failure == null) {
+                    future.complete(result);
+                } else {
+                    future.completeExceptionally(failure);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+    }
+
+    public record Stats(int threads, int active, int queueDepth, int queueCapacity, long completed, long rejected,
+                        long totalWaitMillis, double averageHashMillis, long maxHashMillis) {
+    }
+}
@@ -0,0 +1,14 @@
+package gunlender.domain.services;
+
+import java.util.UUID;
+
+/**
+ * User a request was authenticated as, taken from the claims of its token. Anonymous requests have no id.
+ */
+public record Principal(UUID id, String email, AuthManager.Role role) {
+    public static final Principal ANONYMOUS = new Principal(null, "", AuthManager.Role.ANYONE);
+
+    public boolean isUser(UUID userId) {
+        return id != null && id.equals(userId);
+    }
+}
@@ -1,126 +1,290 @@
 package gunlender.infrastructure.database;
 
+import gunlender.application.Cursor;
+import gunlender.application.Migration;
+import gunlender.application.Page;
+import gunlender.application.PageRequest;
 import gunlender.application.Repository;
+import gunlender.application.dto.AmmoFilter;
 import gunlender.domain.entities.Ammo;
+import gunlender.domain.exceptions.OutOfStockException;
 import gunlender.domain.exceptions.RepositoryException;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 public class AmmoRepository implements Repository {
-    private final String databaseUrl;
+    private static final List<Migration> MIGRATIONS = List.of(
+            Migration.sql(1, "Create ammo table", "create table if not exists ammo (Id VARCHAR(16) UNIQUE, " +
+                    "Caliber VARCHAR(32), Amount INT, Price DECIMAL(3,2), Picture VARCHAR(256))"),
+            Migration.sql(2, "Index filter columns", "create index if not exists ammo_caliber on ammo (Caliber, Id)")
+    );
 
-    public AmmoRepository(String databaseUrl) {
-        this.databaseUrl = databaseUrl;
+    private static final Function<Ammo, String> CURSOR_OF = ammo -> Cursor.encode(ammo.getId().toString());
+
+    private final Database database;
+    private final IdFormat idFormat;
+    private final AtomicLong version = new AtomicLong();
+
+    public AmmoRepository(Database database) {
+        this.database = database;
+        this.idFormat = database.getIdFormat();
     }
 
     public List<Ammo> getAmmo() throws RepositoryException {
-        var ammo = new ArrayList<Ammo>();
+        try {
+            return database.read(connection -> {
+                var ammo = new ArrayList<Ammo>();
 
-        try (var connection = getConnection()) {
-            try (var statement = connection.createStatement()) {
+                try (var statement = connection.prepareStatement("select " + Ammo.COLUMNS + " from ammo")) {
 
-                statement.setQueryTimeout(30);
+                    statement.setQueryTimeout(30);
 
-                var rs = statement.executeQuery("select * from ammo");
+                    var rs = statement.executeQuery();
 
-                while (rs.next()) {
-                    ammo.add(Ammo.fromResultSet(rs));
+                    while (rs.next()) {
+                        ammo.add(Ammo.fromResultSet(rs));
+                    }
                 }
-            }
+
+                return ammo;
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot get all ammo data from database", e);
         }
+    }
+
+    /**
+     * Passes every ammo to the consumer as it is read, without collecting them. The read connection is held
+     * until the consumer has seen the last row.
+     */
+    public void streamAmmo(RowConsumer<Ammo> consumer) throws RepositoryException, IOException {
+        try {
+            database.read(connection -> {
+                try (var statement = connection.prepareStatement("select " + Ammo.COLUMNS + " from ammo")) {
+                    statement.setQueryTimeout(30);
 
-        return ammo;
+                    var rs = statement.executeQuery();
+
+                    while (rs.next()) {
+                        consumer.accept(Ammo.fromResultSet(rs));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (SQLException e) {
+            throw new RepositoryException("Cannot get all ammo data from database", e);
+        }
+    }
+
+    public Page<Ammo> getAmmo(AmmoFilter filter, PageRequest page) throws RepositoryException {
+        var query = new FilterQuery()
+                .whereSet("Caliber = ?", filter.getCaliber())
+                .whereSet("Price >= ?", filter.getMinPrice())
+                .whereSet("Price <= ?", filter.getMaxPrice());
+
+        if (filter.getAvailable() != null) {
+            query.where(filter.getAvailable() ? "Amount > 0" : "Amount <= 0");
+        }
+        if (page.cursor() != null) {
+            query.where("Id > ?", UUID.fromString(Cursor.decode(page.cursor(), 1)[0]));
+        }
+
+        var sql = query.sql("select " + Ammo.COLUMNS + " from ammo", "Id");
+
+        try {
+            return database.read(connection -> {
+                var ammo = new ArrayList<Ammo>();
+
+                try (var statement = connection.prepareStatement(sql)) {
+                    query.bind(statement, idFormat, page.limit() + 1);
+                    statement.setQueryTimeout(30);
+
+                    var rs = statement.executeQuery();
+
+                    while (rs.next()) {
+                        ammo.add(Ammo.fromResultSet(rs));
+                    }
+                }
+
+                return Page.fromRows(ammo, page.limit(), CURSOR_OF);
+            });
+        } catch (SQLException e) {
+            throw new RepositoryException("Cannot get ammo data from database", e);
+        }
     }
 
 
     public int removeAmmo(UUID uuid) throws RepositoryException {
-        try (final Connection connection = getConnection()) {
-            try (final PreparedStatement statement = connection.prepareStatement("delete from ammo where Id = ?")) {
-                statement.setString(1, uuid.toString());
-                statement.setQueryTimeout(30);
-                return statement.executeUpdate();
-            }
+        try {
+            return database.write(connection -> {
+                database.afterCommit(version::incrementAndGet);
+
+                try (final PreparedStatement statement = connection.prepareStatement("delete from ammo where Id = ?")) {
+                    idFormat.bind(statement, 1, uuid);
+                    statement.setQueryTimeout(30);
+                    return statement.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             throw new RepositoryException(String.format("Cannot delete ammo with Id '%s' from database", uuid.toString()), e);
         }
     }
 
     public Optional<Ammo> getAmmoById(UUID uuid) throws RepositoryException {
-        Optional<Ammo> ammo = Optional.empty();
+        try {
+            return database.read(connection -> {
+                Optional<Ammo> ammo = Optional.empty();
 
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("select * from ammo where Id = ?")) {
-                statement.setString(1, uuid.toString());
-                statement.setQueryTimeout(30);
+                try (var statement = connection.prepareStatement("select " + Ammo.COLUMNS + " from ammo " +
+                        "where Id = ?")) {
+                    idFormat.bind(statement, 1, uuid);
+                    statement.setQueryTimeout(30);
 
-                var rs = statement.executeQuery();
+                    var rs = statement.executeQuery();
 
-                if (rs.next()) {
-                    ammo = Optional.of(Ammo.fromResultSet(rs));
+                    if (rs.next()) {
+                        ammo = Optional.of(Ammo.fromResultSet(rs));
+                    }
                 }
-            }
+
+                return ammo;
+            });
         } catch (SQLException e) {
             var msg = String.format("Cannot get ammo with Id '%s' from database", uuid.toString());
             throw new RepositoryException(msg, e);
         }
-
-        return ammo;
     }
 
     public void updateAmmo(Ammo ammo) throws RepositoryException {
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("update ammo set caliber = ?, amount = ?, price = ?, picture = ? where id = ?")) {
-                statement.setQueryTimeout(30);
+        try {
+            database.write(connection -> {
+                database.afterCommit(version::incrementAndGet);
 
-                statement.setString(1, ammo.getCaliber());
-                statement.setInt(2, ammo.getAmount());
-                statement.setDouble(3, ammo.getPrice());
-                statement.setString(4, ammo.getPicture());
-                statement.setString(5, ammo.getId().toString());
+                try (var statement = connection.prepareStatement("update ammo set caliber = ?, amount = ?, price = ?, picture = ? where id = ?")) {
+                    statement.setQueryTimeout(30);
 
-                statement.executeUpdate();
-            }
+                    statement.setString(1, ammo.getCaliber());
+                    statement.setInt(2, ammo.getAmount());
+                    statement.setDouble(3, ammo.getPrice());
+                    statement.setString(4, ammo.getPicture());
+                    idFormat.bind(statement, 5, ammo.getId());
+
+                    return statement.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot update ammo in database", e);
         }
     }
 
     public void addAmmo(Ammo ammo) throws RepositoryException {
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("insert into ammo values (?, ?, ?, ?, ?)")) {
-                statement.setQueryTimeout(30);
+        try {
+            database.write(connection -> {
+                database.afterCommit(version::incrementAndGet);
 
-                statement.setString(1, ammo.getId().toString());
-                statement.setString(2, ammo.getCaliber());
-                statement.setInt(3, ammo.getAmount());
-                statement.setDouble(4, ammo.getPrice());
-                statement.setString(5, ammo.getPicture());
+                try (var statement = connection.prepareStatement("insert into ammo values (?, ?, ?, ?, ?)")) {
+                    statement.setQueryTimeout(30);
 
-                statement.executeUpdate();
-            }
+                    idFormat.bind(statement, 1, ammo.getId());
+                    statement.setString(2, ammo.getCaliber());
+                    statement.setInt(3, ammo.getAmount());
+                    statement.setDouble(4, ammo.getPrice());
+                    statement.setString(5, ammo.getPicture());
+
+                    return statement.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot insert ammo to database", e);
         }
     }
 
-    public void migrate() throws RepositoryException {
-        try (var connection = getConnection()) {
-            try (var statement = connection.createStatement()) {
-                statement.setQueryTimeout(30);
-                statement.executeUpdate(String.format("create table if not exists ammo %s", Ammo.toSqlTableDefinition()));
+    /**
+     * Takes rounds out of stock in a single conditional update, so concurrent lendings cannot take more than there
+     * is. Throws {@link OutOfStockException} when fewer are left, failing the surrounding write.
+     */
+    public void reserveAmmo(UUID id, int amount, Connection connection) throws RepositoryException {
+        requireAmount(amount);
+        int updated;
+
+        try (var statement = connection.prepareStatement(
+                "update ammo set Amount = Amount - ? where Id = ? and Amount >= ?")) {
+            statement.setQueryTimeout(30);
+            statement.setInt(1, amount);
+            idFormat.bind(statement, 2, id);
+            statement.setInt(3, amount);
+
+            updated = statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RepositoryException(String.format("Cannot reserve ammo with Id '%s'", id), e);
+        }
+
+        if (updated == 0) {
+            throw new OutOfStockException(String.format("Not enough ammo with Id '%s' in stock", id));
+        }
+
+        database.afterCommit(version::incrementAndGet);
+    }
+
+    /**
+     * Puts rounds back into stock. Returns whether the ammo still exists.
+     */
+    public boolean releaseAmmo(UUID id, int amount, Connection connection) throws RepositoryException {
+        requireAmount(amount);
+
+        try (var statement = connection.prepareStatement("update ammo set Amount = Amount + ? where Id = ?")) {
+            statement.setQueryTimeout(30);
+            statement.setInt(1, amount);
+            idFormat.bind(statement, 2, id);
+
+            var updated = statement.executeUpdate() == 1;
+            if (updated) {
+                database.afterCommit(version::incrementAndGet);
             }
+            return updated;
         } catch (SQLException e) {
-            throw new RepositoryException("Cannot migrate 'ammo' table", e);
+            throw new RepositoryException(String.format("Cannot release ammo with Id '%s'", id), e);
+        }
+    }
+
+    private static void requireAmount(int amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Ammo amount cannot be negative");
         }
     }
 
-    private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(databaseUrl);
+    /**
+     * Counter bumped after every committed change to the ammo table, for callers keeping data derived from it.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public String getSchemaName() {
+        return "ammo";
+    }
+
+    @Override
+    public List<Migration> getMigrations() {
+        return MIGRATIONS;
+    }
+
+    @Override
+    public List<String> getIdColumns() {
+        return List.of("Id");
     }
 }
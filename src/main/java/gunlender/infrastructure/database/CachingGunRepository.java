@@ -0,0 +1,167 @@
+package gunlender.infrastructure.database;
+
+import gunlender.application.dto.GunDto;
+import gunlender.domain.entities.Gun;
+import gunlender.domain.exceptions.RepositoryException;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache in front of {@link GunRepository} holding the whole catalog and single guns by id.
+ * <p>
+ * Entries are dropped once the transaction that changed the gun has committed. A load that overlapped any
+ * invalidation is returned to its caller but not cached, so a slow reader can never put back data older than
+ * the latest write. Filtered pages and reads inside a write transaction always go to the database.
+ */
+public class CachingGunRepository extends GunRepository {
+    private final Database database;
+    private final Map<UUID, Gun> guns = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final Object lock = new Object();
+    private volatile List<Gun> catalog;
+    private long generation;
+
+    public CachingGunRepository(Database database) {
+        super(database);
+        this.database = database;
+    }
+
+    @Override
+    public List<Gun> getGuns() throws RepositoryException {
+        var cached = catalog;
+
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        var start = currentGeneration();
+        var loaded = List.copyOf(super.getGuns());
+
+        synchronized (lock) {
+            if (generation == start) {
+                catalog = loaded;
+            }
+        }
+
+        return loaded;
+    }
+
+    @Override
+    public void streamGuns(RowConsumer<Gun> consumer) throws RepositoryException, IOException {
+        for (var gun : getGuns()) {
+            consumer.accept(gun);
+        }
+    }
+
+    @Override
+    public Optional<Gun> getGunById(UUID uuid) throws RepositoryException {
+        var cached = guns.get(uuid);
+
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+
+        misses.increment();
+        var start = currentGeneration();
+        var loaded = super.getGunById(uuid);
+
+        if (loaded.isPresent()) {
+            synchronized (lock) {
+                if (generation == start) {
+                    guns.put(uuid, loaded.get());
+                }
+            }
+        }
+
+        return loaded;
+    }
+
+    @Override
+    public void addGun(Gun gun) throws RepositoryException {
+        super.addGun(gun);
+        invalidate(gun.getId());
+    }
+
+    /**
+     * Also covers {@link #updateGun(UUID, GunDto)}, which ends up here.
+     */
+    @Override
+    public void updateGun(UUID id, GunDto gun, Connection connection) throws RepositoryException {
+        super.updateGun(id, gun, connection);
+        database.afterCommit(() -> invalidate(id));
+    }
+
+    @Override
+    public void reserveGun(UUID id, Connection connection) throws RepositoryException {
+        super.reserveGun(id, connection);
+        database.afterCommit(() -> invalidate(id));
+    }
+
+    @Override
+    public boolean releaseGun(UUID id, Connection connection) throws RepositoryException {
+        var released = super.releaseGun(id, connection);
+        database.afterCommit(() -> invalidate(id));
+        return released;
+    }
+
+    @Override
+    public void deleteGun(UUID id) throws RepositoryException {
+        super.deleteGun(id);
+        invalidate(id);
+    }
+
+    /**
+     * Follows the cache rather than the table, so anything built from cached reads is never tagged with a version
+     * newer than the data it saw.
+     */
+    @Override
+    public long getVersion() {
+        return currentGeneration();
+    }
+
+    public Stats getStats() {
+        var hitCount = hits.sum();
+        var missCount = misses.sum();
+        var lookups = hitCount + missCount;
+        var cachedCatalog = catalog;
+
+        return new Stats(
+                hitCount,
+                missCount,
+                lookups == 0 ? 0 : (double) hitCount / lookups,
+                cachedCatalog == null ? 0 : cachedCatalog.size(),
+                guns.size(),
+                invalidations.sum()
+        );
+    }
+
+    private void invalidate(UUID id) {
+        synchronized (lock) {
+            generation++;
+            catalog = null;
+            guns.remove(id);
+        }
+        invalidations.increment();
+    }
+
+    private long currentGeneration() {
+        synchronized (lock) {
+            return generation;
+        }
+    }
+
+    public record Stats(long hits, long misses, double hitRate, int catalogSize, int entries, long invalidations) {
+    }
+}
@@ -0,0 +1,64 @@
+package gunlender.infrastructure.database;
+
+import gunlender.domain.exceptions.RepositoryException;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps how many callers are inside the database at once, reads and queued writes together.
+ * <p>
+ * With a thread per request the request pool already bounds this, but with virtual threads every request can
+ * reach the database at the same time and pile up behind the connection pool and the writer lane. Callers over
+ * the limit wait in arrival order and give up after the timeout.
+ */
+public final class ConcurrencyLimiter {
+    private final int limit;
+    private final long timeoutMillis;
+    private final Semaphore permits;
+    private final LongAdder rejectedCount = new LongAdder();
+
+    @FunctionalInterface
+    interface Call<T> {
+        T call() throws SQLException, RepositoryException;
+    }
+
+    public ConcurrencyLimiter(int limit, long timeoutMillis) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Concurrency limit must be at least 1");
+        }
+
+        this.limit = limit;
+        this.timeoutMillis = timeoutMillis;
+        this.permits = new Semaphore(limit, true);
+    }
+
+    <T> T run(Call<T> call) throws SQLException, RepositoryException {
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejectedCount.increment();
+                throw new SQLTransientException(
+                        String.format("Database is busy, %d calls already in progress", limit));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for database", e);
+        }
+
+        try {
+            return call.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(limit, limit - permits.availablePermits(), permits.getQueueLength(), rejectedCount.sum());
+    }
+
+    public record Stats(int limit, int inUse, int waiting, long rejected) {
+    }
+}
@@ -0,0 +1,9 @@
+package gunlender.infrastructure.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface ConnectionInitializer {
+    void initialize(Connection connection) throws SQLException;
+}
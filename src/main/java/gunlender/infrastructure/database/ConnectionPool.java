@@ -0,0 +1,315 @@
+package gunlender.infrastructure.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of SQLite connections shared by all repositories.
+ * <p>
+ * Callers get a proxy whose {@code close()} hands the physical connection back to the pool instead of closing it,
+ * so existing try-with-resources blocks keep working unchanged. Statements prepared through it come from a
+ * {@link StatementCache} attached to the physical connection.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+    private final String databaseUrl;
+    private final PoolConfig config;
+    private final ConnectionInitializer initializer;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Map<PooledConnection, Lease> leases = new ConcurrentHashMap<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final LongAdder acquiredCount = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final ScheduledExecutorService leakDetector;
+    private volatile boolean closed;
+
+    public ConnectionPool(String databaseUrl, PoolConfig config) {
+        this(databaseUrl, config, connection -> {
+        });
+    }
+
+    public ConnectionPool(String databaseUrl, PoolConfig config, ConnectionInitializer initializer) {
+        if (config.getMaximumPoolSize() < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+
+        this.databaseUrl = databaseUrl;
+        this.config = config;
+        this.initializer = initializer;
+        this.permits = new Semaphore(config.getMaximumPoolSize(), true);
+
+        if (config.getLeakDetectionThresholdMillis() > 0) {
+            var period = Math.max(1_000, config.getLeakDetectionThresholdMillis() / 2);
+            leakDetector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                var thread = new Thread(runnable, "connection-pool-leak-detector");
+                thread.setDaemon(true);
+                return thread;
+            });
+            leakDetector.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            leakDetector = null;
+        }
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        var start = System.nanoTime();
+
+        try {
+            if (!permits.tryAcquire(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                timeoutCount.increment();
+                var msg = String.format("Cannot acquire database connection within %d ms",
+                        config.getAcquireTimeoutMillis());
+                throw new SQLTimeoutException(msg);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for database connection", e);
+        }
+
+        waitNanos.add(System.nanoTime() - start);
+        acquiredCount.increment();
+
+        try {
+            var pooled = takeIdleOrOpen();
+            var lease = new Lease(pooled, config.getLeakDetectionThresholdMillis() > 0
+                    ? new Exception("Connection acquired here") : null);
+            leases.put(pooled, lease);
+            return lease.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(
+                config.getMaximumPoolSize(),
+                totalConnections.get(),
+                leases.size(),
+                idle.size(),
+                permits.getQueueLength(),
+                acquiredCount.sum(),
+                TimeUnit.NANOSECONDS.toMillis(waitNanos.sum()),
+                timeoutCount.sum(),
+                leakCount.sum(),
+                statementCacheHits.sum(),
+                statementCacheMisses.sum()
+        );
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+
+        if (leakDetector != null) {
+            leakDetector.shutdownNow();
+        }
+
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    private PooledConnection takeIdleOrOpen() throws SQLException {
+        PooledConnection pooled;
+
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+
+        var physical = DriverManager.getConnection(databaseUrl);
+
+        try {
+            initializer.initialize(physical);
+        } catch (SQLException | RuntimeException e) {
+            physical.close();
+            throw e;
+        }
+
+        totalConnections.incrementAndGet();
+        var statements = config.getStatementCacheSize() > 0
+                ? new StatementCache(physical, config.getStatementCacheSize(), statementCacheHits, statementCacheMisses)
+                : null;
+        return new PooledConnection(physical, statements);
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        var idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pooled.lastReturnedNanos);
+
+        try {
+            if (idleMillis < config.getValidationIntervalMillis()) {
+                return !pooled.physical.isClosed();
+            }
+            return pooled.physical.isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            logger.warn("Cannot validate pooled connection", e);
+            return false;
+        }
+    }
+
+    private void release(Lease lease) {
+        var pooled = lease.pooled;
+        leases.remove(pooled);
+
+        try {
+            if (!closed && reset(pooled)) {
+                pooled.lastReturnedNanos = System.nanoTime();
+                idle.offerFirst(pooled);
+            } else {
+                discard(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean reset(PooledConnection pooled) {
+        var physical = pooled.physical;
+
+        try {
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (pooled.statements != null) {
+                pooled.statements.reset();
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            physical.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            logger.warn("Cannot reset connection returned to pool", e);
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+
+        if (pooled.statements != null) {
+            pooled.statements.close();
+        }
+
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            logger.warn("Cannot close pooled connection", e);
+        }
+    }
+
+    private void detectLeaks() {
+        var threshold = config.getLeakDetectionThresholdMillis();
+        var now = System.nanoTime();
+
+        for (var lease : leases.values()) {
+            var heldMillis = TimeUnit.NANOSECONDS.toMillis(now - lease.acquiredNanos);
+            if (heldMillis > threshold && lease.leakReported.compareAndSet(false, true)) {
+                leakCount.increment();
+                logger.warn(String.format("Connection held for %d ms, possible leak", heldMillis), lease.acquiredAt);
+            }
+        }
+    }
+
+    public record Stats(int maximumPoolSize, int total, int active, int idle, int waiters, long acquired,
+                        long totalWaitMillis, long timeouts, long leaks, long statementCacheHits,
+                        long statementCacheMisses) {
+    }
+
+    private static final class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statements;
+        private volatile long lastReturnedNanos;
+
+        private PooledConnection(Connection physical, StatementCache statements) {
+            this.physical = physical;
+            this.statements = statements;
+            this.lastReturnedNanos = System.nanoTime();
+        }
+    }
+
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final Exception acquiredAt;
+        private final long acquiredNanos = System.nanoTime();
+        private final AtomicBoolean returned = new AtomicBoolean();
+        private final AtomicBoolean leakReported = new AtomicBoolean();
+        private final Connection proxy;
+
+        private Lease(PooledConnection pooled, Exception acquiredAt) {
+            this.pooled = pooled;
+            this.acquiredAt = acquiredAt;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned.get() || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.physical;
+                default:
+                    break;
+            }
+
+            if (returned.get()) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            if (pooled.statements != null && method.getName().equals("prepareStatement") && args.length == 1) {
+                return pooled.statements.prepare((String) args[0]);
+            }
+
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
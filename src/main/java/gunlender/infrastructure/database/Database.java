@@ -0,0 +1,168 @@
+package gunlender.infrastructure.database;
+
+import gunlender.domain.exceptions.RepositoryException;
+import gunlender.infrastructure.metrics.Histogram;
+import gunlender.infrastructure.metrics.HistogramFamily;
+
+import java.sql.SQLException;
+
+/**
+ * Entry point of the persistence layer. Reads run on a pool of read-only connections, while every mutation is
+ * routed through the single {@link WriterLane}.
+ */
+public class Database implements AutoCloseable {
+    private static final int READ = 0;
+    private static final int WRITE = 1;
+    private static final int WRITE_GROUPED = 2;
+
+    private final ConnectionPool readPool;
+    private final ConnectionPool writePool;
+    private final WriterLane writerLane;
+    private final IdFormat idFormat;
+    private final ConcurrencyLimiter limiter;
+    private final HistogramFamily callTimings = new HistogramFamily("gunlender_database_call_duration_seconds",
+            "Database calls from request until the work returned, waiting for a connection or the writer included",
+            "caller", "operation");
+    // Indexed by the class that defined the work, which is the repository for the lambdas they pass in
+    private final ClassValue<Histogram[]> timers = new ClassValue<>() {
+        @Override
+        protected Histogram[] computeValue(Class<?> type) {
+            var caller = callerName(type);
+            return new Histogram[]{
+                    callTimings.labels(caller, "read"),
+                    callTimings.labels(caller, "write"),
+                    callTimings.labels(caller, "write_grouped")
+            };
+        }
+    };
+
+    /**
+     * @param limiter caps concurrent callers, {@code null} leaves that to the request thread pool
+     */
+    public Database(ConnectionPool readPool, ConnectionPool writePool, long groupCommitWindowMillis,
+                    int groupCommitMaxBatch, IdFormat idFormat, ConcurrencyLimiter limiter) {
+        this.readPool = readPool;
+        this.writePool = writePool;
+        this.writerLane = new WriterLane(writePool, groupCommitWindowMillis, groupCommitMaxBatch);
+        this.idFormat = idFormat;
+        this.limiter = limiter;
+    }
+
+    public static Database open(DatabaseConfig config) {
+        var readPool = new ConnectionPool(config.getUrl(), config.getPool(), connection -> {
+            config.applyPragmas(connection);
+            try (var statement = connection.createStatement()) {
+                statement.execute("pragma query_only = 1");
+            }
+        });
+
+        var writerPoolConfig = new PoolConfig();
+        writerPoolConfig.setMaximumPoolSize(1);
+        writerPoolConfig.setValidationIntervalMillis(config.getPool().getValidationIntervalMillis());
+        writerPoolConfig.setValidationTimeoutSeconds(config.getPool().getValidationTimeoutSeconds());
+        writerPoolConfig.setLeakDetectionThresholdMillis(config.getPool().getLeakDetectionThresholdMillis());
+        writerPoolConfig.setStatementCacheSize(config.getPool().getStatementCacheSize());
+        var writePool = new ConnectionPool(config.getUrl(), writerPoolConfig, config::applyPragmas);
+
+        var limiter = config.getMaxConcurrency() > 0
+                ? new ConcurrencyLimiter(config.getMaxConcurrency(), config.getPool().getAcquireTimeoutMillis())
+                : null;
+
+        return new Database(readPool, writePool, config.getGroupCommitWindowMillis(),
+                config.getGroupCommitMaxBatch(), config.getIdFormat(), limiter);
+    }
+
+    public <T> T read(SqlWork<T> work) throws SQLException, RepositoryException {
+        return timed(work, READ, () -> {
+            try (var connection = readPool.getConnection()) {
+                return work.execute(connection);
+            }
+        });
+    }
+
+    /**
+     * Runs the work on the writer connection. Its changes are committed if it returns normally and rolled back
+     * if it throws.
+     */
+    public <T> T write(SqlWork<T> work) throws SQLException, RepositoryException {
+        return timed(work, WRITE, () -> writerLane.submit(work));
+    }
+
+    /**
+     * Same as {@link #write(SqlWork)}, but the work may share its commit with other writes arriving within the
+     * group commit window. It still succeeds or fails on its own.
+     */
+    public <T> T writeGrouped(SqlWork<T> work) throws SQLException, RepositoryException {
+        return timed(work, WRITE_GROUPED, () -> writerLane.submitGrouped(work));
+    }
+
+    /**
+     * Defers the action until the write currently running has committed. See {@link WriterLane#afterCommit}.
+     */
+    public void afterCommit(Runnable action) {
+        writerLane.afterCommit(action);
+    }
+
+    /**
+     * Format in which repositories bind UUIDs. The {@link MigrationRunner} converts stored ids to it on startup.
+     */
+    public IdFormat getIdFormat() {
+        return idFormat;
+    }
+
+    public Stats getStats() {
+        return new Stats(readPool.getStats(), writePool.getStats(), writerLane.getStats(),
+                limiter == null ? null : limiter.getStats());
+    }
+
+    @Override
+    public void close() {
+        writerLane.close();
+        writePool.close();
+        readPool.close();
+    }
+
+    /**
+     * Latency of every read and write by the class that submitted it, see {@link #read} and {@link #write}.
+     */
+    public HistogramFamily getCallTimings() {
+        return callTimings;
+    }
+
+    private <T> T timed(SqlWork<T> work, int operation, ConcurrencyLimiter.Call<T> call)
+            throws SQLException, RepositoryException {
+        var start = System.nanoTime();
+
+        try {
+            return limited(call);
+        } finally {
+            timers.get(work.getClass())[operation].observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * {@code gunlender.infrastructure.database.GunRepository$$Lambda$42/0x...} becomes {@code GunRepository}.
+     */
+    private static String callerName(Class<?> type) {
+        var name = type.getName();
+        var nested = name.indexOf('$');
+        if (nested > 0) {
+            name = name.substring(0, nested);
+        }
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * The writer thread is never limited: it holds no permit of its own, and the caller it works for already does.
+     */
+    private <T> T limited(ConcurrencyLimiter.Call<T> call) throws SQLException, RepositoryException {
+        if (limiter == null || writerLane.isWriterThread()) {
+            return call.call();
+        }
+        return limiter.run(call);
+    }
+
+    public record Stats(ConnectionPool.Stats readers, ConnectionPool.Stats writerConnection, WriterLane.Stats writer,
+                        ConcurrencyLimiter.Stats limiter) {
+    }
+}
@@ -0,0 +1,97 @@
+package gunlender.infrastructure.database;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+
+@Getter
+@Setter
+public class DatabaseConfig {
+    private String url = "jdbc:sqlite:gunlender.db";
+    private String journalMode = "WAL";
+    private String synchronous = "NORMAL";
+    private long mmapSizeBytes = 64L * 1024 * 1024;
+    private int cacheSizeKib = 16 * 1024;
+    private int busyTimeoutMillis = 5_000;
+    private long groupCommitWindowMillis = 2;
+    private int groupCommitMaxBatch = 64;
+    private IdFormat idFormat = IdFormat.TEXT;
+    // 0 leaves the number of concurrent database callers to the request thread pool
+    private int maxConcurrency = 0;
+    private PoolConfig pool = new PoolConfig();
+
+    /**
+     * Returns settings for the given environment ("production", "development" or "test"), with every value
+     * overridable through {@code GUNLENDER_DB_*} environment variables.
+     */
+    public static DatabaseConfig forEnvironment(String environment) {
+        var config = new DatabaseConfig();
+
+        switch (environment.toLowerCase(Locale.ROOT)) {
+            case "production" -> {
+                config.setMmapSizeBytes(256L * 1024 * 1024);
+                config.setCacheSizeKib(64 * 1024);
+            }
+            case "test" -> {
+                config.setJournalMode("MEMORY");
+                config.setSynchronous("OFF");
+                config.setMmapSizeBytes(0);
+                config.setCacheSizeKib(2 * 1024);
+            }
+            default -> {
+            }
+        }
+
+        config.setUrl(stringFromEnv("GUNLENDER_DB_URL", config.getUrl()));
+        config.setJournalMode(stringFromEnv("GUNLENDER_DB_JOURNAL_MODE", config.getJournalMode()));
+        config.setSynchronous(stringFromEnv("GUNLENDER_DB_SYNCHRONOUS", config.getSynchronous()));
+        config.setMmapSizeBytes(PoolConfig.longFromEnv("GUNLENDER_DB_MMAP_SIZE", config.getMmapSizeBytes()));
+        config.setCacheSizeKib(PoolConfig.intFromEnv("GUNLENDER_DB_CACHE_SIZE_KIB", config.getCacheSizeKib()));
+        config.setBusyTimeoutMillis(PoolConfig.intFromEnv("GUNLENDER_DB_BUSY_TIMEOUT_MS",
+                config.getBusyTimeoutMillis()));
+        config.setGroupCommitWindowMillis(PoolConfig.longFromEnv("GUNLENDER_DB_GROUP_COMMIT_WINDOW_MS",
+                config.getGroupCommitWindowMillis()));
+        config.setGroupCommitMaxBatch(PoolConfig.intFromEnv("GUNLENDER_DB_GROUP_COMMIT_MAX_BATCH",
+                config.getGroupCommitMaxBatch()));
+        config.setIdFormat(IdFormat.valueOf(stringFromEnv("GUNLENDER_DB_ID_FORMAT", config.getIdFormat().name())
+                .toUpperCase(Locale.ROOT)));
+        config.setMaxConcurrency(PoolConfig.intFromEnv("GUNLENDER_DB_MAX_CONCURRENCY", config.getMaxConcurrency()));
+        config.setPool(PoolConfig.fromEnvironment());
+
+        return config;
+    }
+
+    public static DatabaseConfig fromEnvironment() {
+        return forEnvironment(stringFromEnv("GUNLENDER_ENV", "development"));
+    }
+
+    /**
+     * Applies the configured pragmas. Called by the pool for every newly opened connection, since all of them
+     * except journal_mode are per-connection settings in SQLite.
+     */
+    public void applyPragmas(Connection connection) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute("pragma busy_timeout = " + busyTimeoutMillis);
+            statement.execute("pragma journal_mode = " + requireIdentifier(journalMode));
+            statement.execute("pragma synchronous = " + requireIdentifier(synchronous));
+            statement.execute("pragma mmap_size = " + mmapSizeBytes);
+            // Negative value means size in KiB rather than in pages
+            statement.execute("pragma cache_size = " + -cacheSizeKib);
+        }
+    }
+
+    private static String requireIdentifier(String value) {
+        if (!value.matches("[A-Za-z]+")) {
+            throw new IllegalArgumentException(String.format("Invalid pragma value '%s'", value));
+        }
+        return value;
+    }
+
+    private static String stringFromEnv(String name, String defaultValue) {
+        var value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+}
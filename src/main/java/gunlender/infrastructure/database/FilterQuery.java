@@ -0,0 +1,53 @@
+package gunlender.infrastructure.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Builds the where clause of a filtered, keyset paginated query together with its parameters. UUID parameters
+ * are bound in the configured {@link IdFormat}.
+ */
+final class FilterQuery {
+    private final List<String> conditions = new ArrayList<>();
+    private final List<Object> parameters = new ArrayList<>();
+
+    FilterQuery where(String condition, Object... values) {
+        conditions.add(condition);
+        parameters.addAll(List.of(values));
+        return this;
+    }
+
+    /**
+     * Adds the condition only if the value is set.
+     */
+    FilterQuery whereSet(String condition, Object value) {
+        return value == null ? this : where(condition, value);
+    }
+
+    String sql(String select, String orderBy) {
+        var sql = new StringBuilder(select);
+
+        if (!conditions.isEmpty()) {
+            sql.append(" where ").append(String.join(" and ", conditions));
+        }
+
+        return sql.append(" order by ").append(orderBy).append(" limit ?").toString();
+    }
+
+    void bind(PreparedStatement statement, IdFormat idFormat, int limit) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            var value = parameters.get(i);
+
+            if (value instanceof UUID id) {
+                idFormat.bind(statement, i + 1, id);
+            } else {
+                statement.setObject(i + 1, value);
+            }
+        }
+
+        statement.setInt(parameters.size() + 1, limit);
+    }
+}
@@ -1,56 +1,155 @@
 package gunlender.infrastructure.database;
 
+import gunlender.application.Cursor;
+import gunlender.application.Migration;
+import gunlender.application.Page;
+import gunlender.application.PageRequest;
 import gunlender.application.Repository;
 import gunlender.application.dto.GunDto;
+import gunlender.application.dto.GunFilter;
 import gunlender.domain.entities.Gun;
+import gunlender.domain.exceptions.OutOfStockException;
 import gunlender.domain.exceptions.RepositoryException;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 public class GunRepository implements Repository {
-    private final String databaseUrl;
+    private static final List<Migration> MIGRATIONS = List.of(
+            Migration.sql(1, "Create guns table", "create table if not exists guns (Id VARCHAR(16) UNIQUE, " +
+                    "Producer VARCHAR(128), Model VARCHAR(64), Type VARCHAR(64), Caliber VARCHAR(32), Weight DOUBLE, " +
+                    "Length INT, Amount INT, Price DECIMAL(5,2), Picture VARCHAR(256))"),
+            Migration.sql(2, "Index filter columns",
+                    "create index if not exists guns_type on guns (Type, Id)",
+                    "create index if not exists guns_caliber on guns (Caliber, Id)")
+    );
 
-    public GunRepository(String databaseUrl) {
-        this.databaseUrl = databaseUrl;
+    private static final Function<Gun, String> CURSOR_OF = gun -> Cursor.encode(gun.getId().toString());
+
+    private final Database database;
+    private final IdFormat idFormat;
+    private final AtomicLong version = new AtomicLong();
+
+    public GunRepository(Database database) {
+        this.database = database;
+        this.idFormat = database.getIdFormat();
     }
 
     public List<Gun> getGuns() throws RepositoryException {
-        var guns = new ArrayList<Gun>();
+        try {
+            return database.read(connection -> {
+                var guns = new ArrayList<Gun>();
 
-        try (var connection = getConnection()) {
-            try (var statement = connection.createStatement()) {
-                statement.setQueryTimeout(30);
+                try (var statement = connection.prepareStatement("select " + Gun.COLUMNS + " from guns")) {
+                    statement.setQueryTimeout(30);
 
-                var rs = statement.executeQuery("select * from guns");
+                    var rs = statement.executeQuery();
 
-                while (rs.next()) {
-                    guns.add(Gun.fromResultSet(rs));
+                    while (rs.next()) {
+                        guns.add(Gun.fromResultSet(rs));
+                    }
                 }
-            }
+
+                return guns;
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot get all guns from database", e);
         }
+    }
+
+    /**
+     * Passes every gun to the consumer as it is read, without collecting them. The read connection is held
+     * until the consumer has seen the last row.
+     */
+    public void streamGuns(RowConsumer<Gun> consumer) throws RepositoryException, IOException {
+        try {
+            database.read(connection -> {
+                try (var statement = connection.prepareStatement("select " + Gun.COLUMNS + " from guns")) {
+                    statement.setQueryTimeout(30);
+
+                    var rs = statement.executeQuery();
+
+                    while (rs.next()) {
+                        consumer.accept(Gun.fromResultSet(rs));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
 
-        return guns;
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (SQLException e) {
+            throw new RepositoryException("Cannot get all guns from database", e);
+        }
+    }
+
+    public Page<Gun> getGuns(GunFilter filter, PageRequest page) throws RepositoryException {
+        var query = new FilterQuery()
+                .whereSet("Type = ?", filter.getType() == null ? null : filter.getType().name())
+                .whereSet("Caliber = ?", filter.getCaliber())
+                .whereSet("Price >= ?", filter.getMinPrice())
+                .whereSet("Price <= ?", filter.getMaxPrice());
+
+        if (filter.getAvailable() != null) {
+            query.where(filter.getAvailable() ? "Amount > 0" : "Amount <= 0");
+        }
+        if (page.cursor() != null) {
+            query.where("Id > ?", UUID.fromString(Cursor.decode(page.cursor(), 1)[0]));
+        }
+
+        var sql = query.sql("select " + Gun.COLUMNS + " from guns", "Id");
+
+        try {
+            return database.read(connection -> {
+                var guns = new ArrayList<Gun>();
+
+                try (var statement = connection.prepareStatement(sql)) {
+                    query.bind(statement, idFormat, page.limit() + 1);
+                    statement.setQueryTimeout(30);
+
+                    var rs = statement.executeQuery();
+
+                    while (rs.next()) {
+                        guns.add(Gun.fromResultSet(rs));
+                    }
+                }
+
+                return Page.fromRows(guns, page.limit(), CURSOR_OF);
+            });
+        } catch (SQLException e) {
+            throw new RepositoryException("Cannot get guns from database", e);
+        }
     }
 
     public Optional<Gun> getGunById(UUID uuid) throws RepositoryException {
+        try {
+            return database.read(connection -> getGunById(uuid, connection));
+        } catch (SQLException e) {
+            var msg = String.format("Cannot get gun with Id '%s' from database", uuid.toString());
+            throw new RepositoryException(msg, e);
+        }
+    }
+
+    public Optional<Gun> getGunById(UUID uuid, Connection connection) throws RepositoryException {
         Optional<Gun> gun = Optional.empty();
 
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("select * from guns where Id = ?")) {
-                statement.setString(1, uuid.toString());
-                statement.setQueryTimeout(30);
+        try (var statement = connection.prepareStatement("select " + Gun.COLUMNS + " from guns where Id = ?")) {
+            idFormat.bind(statement, 1, uuid);
+            statement.setQueryTimeout(30);
 
-                var rs = statement.executeQuery();
+            var rs = statement.executeQuery();
 
-                if (rs.next()) {
-                    gun = Optional.of(Gun.fromResultSet(rs));
-                }
+            if (rs.next()) {
+                gun = Optional.of(Gun.fromResultSet(rs));
             }
         } catch (SQLException e) {
             var msg = String.format("Cannot get gun with Id '%s' from database", uuid.toString());
@@ -60,33 +159,39 @@ public class GunRepository implements Repository {
         return gun;
     }
 
-
     public void addGun(Gun gun) throws RepositoryException {
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("insert into guns values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
-                statement.setQueryTimeout(30);
-
-                statement.setString(1, gun.getId().toString());
-                statement.setString(2, gun.getProducer());
-                statement.setString(3, gun.getModel());
-                statement.setString(4, gun.getType().name());
-                statement.setString(5, gun.getCaliber());
-                statement.setDouble(6, gun.getWeight());
-                statement.setInt(7, gun.getLength());
-                statement.setInt(8, gun.getAmount());
-                statement.setDouble(9, gun.getPrice());
-                statement.setString(10, gun.getPicture());
-
-                statement.executeUpdate();
-            }
+        try {
+            database.write(connection -> {
+                database.afterCommit(version::incrementAndGet);
+
+                try (var statement = connection.prepareStatement("insert into guns values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    statement.setQueryTimeout(30);
+
+                    idFormat.bind(statement, 1, gun.getId());
+                    statement.setString(2, gun.getProducer());
+                    statement.setString(3, gun.getModel());
+                    statement.setString(4, gun.getType().name());
+                    statement.setString(5, gun.getCaliber());
+                    statement.setDouble(6, gun.getWeight());
+                    statement.setInt(7, gun.getLength());
+                    statement.setInt(8, gun.getAmount());
+                    statement.setDouble(9, gun.getPrice());
+                    statement.setString(10, gun.getPicture());
+
+                    return statement.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot insert gun to database", e);
         }
     }
 
     public void updateGun(UUID id, GunDto gun) throws RepositoryException {
-        try (var connection = getConnection()) {
-            updateGun(id, gun, connection);
+        try {
+            database.write(connection -> {
+                updateGun(id, gun, connection);
+                return null;
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot insert gun to database", e);
         }
@@ -106,40 +211,94 @@ public class GunRepository implements Repository {
             statement.setInt(7, gun.getAmount());
             statement.setDouble(8, gun.getPrice());
             statement.setString(9, gun.getPicture());
-            statement.setString(10, id.toString());
+            idFormat.bind(statement, 10, id);
 
             statement.executeUpdate();
+            database.afterCommit(version::incrementAndGet);
         } catch (SQLException e) {
             throw new RepositoryException("Cannot insert gun to database", e);
         }
     }
 
-    public void deleteGun(UUID id) throws RepositoryException {
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("delete from guns where Id = ?")) {
-                statement.setQueryTimeout(30);
+    /**
+     * Takes one gun out of stock in a single conditional update, so concurrent lendings cannot both take the last
+     * one. Throws {@link OutOfStockException} when none is left, failing the surrounding write.
+     */
+    public void reserveGun(UUID id, Connection connection) throws RepositoryException {
+        int updated;
 
-                statement.setString(1, id.toString());
+        try (var statement = connection.prepareStatement(
+                "update guns set Amount = Amount - 1 where Id = ? and Amount > 0")) {
+            statement.setQueryTimeout(30);
+            idFormat.bind(statement, 1, id);
 
-                statement.executeUpdate();
-            }
+            updated = statement.executeUpdate();
         } catch (SQLException e) {
-            throw new RepositoryException("Cannot insert gun to database", e);
+            throw new RepositoryException(String.format("Cannot reserve gun with Id '%s'", id), e);
+        }
+
+        if (updated == 0) {
+            throw new OutOfStockException(String.format("Gun with Id '%s' is not available", id));
         }
+
+        database.afterCommit(version::incrementAndGet);
     }
 
-    public void migrate() throws RepositoryException {
-        try (var connection = getConnection()) {
-            try (var statement = connection.createStatement()) {
-                statement.setQueryTimeout(30);
-                statement.executeUpdate(String.format("create table if not exists guns %s", Gun.toSqlTableDefinition()));
+    /**
+     * Puts one gun back into stock. Returns whether the gun still exists.
+     */
+    public boolean releaseGun(UUID id, Connection connection) throws RepositoryException {
+        try (var statement = connection.prepareStatement("update guns set Amount = Amount + 1 where Id = ?")) {
+            statement.setQueryTimeout(30);
+            idFormat.bind(statement, 1, id);
+
+            var updated = statement.executeUpdate() == 1;
+            if (updated) {
+                database.afterCommit(version::incrementAndGet);
             }
+            return updated;
         } catch (SQLException e) {
-            throw new RepositoryException("Cannot migrate 'guns' table", e);
+            throw new RepositoryException(String.format("Cannot release gun with Id '%s'", id), e);
         }
     }
 
-    private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(databaseUrl);
+    public void deleteGun(UUID id) throws RepositoryException {
+        try {
+            database.write(connection -> {
+                database.afterCommit(version::incrementAndGet);
+
+                try (var statement = connection.prepareStatement("delete from guns where Id = ?")) {
+                    statement.setQueryTimeout(30);
+
+                    idFormat.bind(statement, 1, id);
+
+                    return statement.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            throw new RepositoryException("Cannot insert gun to database", e);
+        }
+    }
+
+    /**
+     * Counter bumped after every committed change to the guns table, for callers keeping data derived from it.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public String getSchemaName() {
+        return "guns";
+    }
+
+    @Override
+    public List<Migration> getMigrations() {
+        return MIGRATIONS;
+    }
+
+    @Override
+    public List<String> getIdColumns() {
+        return List.of("Id");
     }
 }
@@ -0,0 +1,36 @@
+package gunlender.infrastructure.database;
+
+import gunlender.application.Page;
+import gunlender.application.PageRequest;
+import gunlender.domain.exceptions.RepositoryException;
+
+import java.io.IOException;
+
+/**
+ * Feeds a consumer from a keyset paginated query one page at a time. Each page is read with its own connection,
+ * which is back in the pool before the consumer sees the rows.
+ */
+final class KeysetChunks {
+    static final int CHUNK_SIZE = PageRequest.MAX_LIMIT;
+
+    @FunctionalInterface
+    interface PageSource<T> {
+        Page<T> fetch(PageRequest page) throws RepositoryException;
+    }
+
+    private KeysetChunks() {}
+
+    static <T> void forEach(PageSource<T> source, RowConsumer<T> consumer) throws RepositoryException, IOException {
+        String cursor = null;
+
+        do {
+            var page = source.fetch(new PageRequest(cursor, CHUNK_SIZE));
+
+            for (var row : page.items()) {
+                consumer.accept(row);
+            }
+
+            cursor = page.nextCursor();
+        } while (cursor != null);
+    }
+}
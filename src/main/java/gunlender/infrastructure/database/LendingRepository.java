@@ -1,127 +1,214 @@
 package gunlender.infrastructure.database;
 
+import gunlender.application.Cursor;
+import gunlender.application.Migration;
+import gunlender.application.Page;
+import gunlender.application.PageRequest;
 import gunlender.application.Repository;
+import gunlender.application.dto.LendingFilter;
 import gunlender.application.dto.UpdateLendingDto;
+import gunlender.domain.entities.InstantColumns;
 import gunlender.domain.entities.Lending;
+import gunlender.domain.entities.UuidColumns;
+import gunlender.domain.exceptions.DuplicateLendingException;
 import gunlender.domain.exceptions.RepositoryException;
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.SQLiteException;
 
+import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 
 public class LendingRepository implements Repository {
-    private final String databaseUrl;
-
-    public LendingRepository(String databaseUrl) {
-        this.databaseUrl = databaseUrl;
+    private static final String KEYED_DEFINITION = "(UserId VARCHAR(16), GunId VARCHAR(16), AmmoId VARCHAR(16), " +
+            "AmmoAmount INT, ReservationDate DATETIME, TotalPrice DECIMAL(10,2), PRIMARY KEY (UserId, GunId, AmmoId))";
+    private static final int MAX_REPORTED_DUPLICATES = 20;
+
+    private static final Function<Lending, String> CURSOR_OF = lending -> Cursor.encode(
+            lending.getReservationDate().toString(), lending.getUserId().toString(), lending.getGunId().toString(),
+            lending.getAmmoId().toString());
+
+    private final Database database;
+    private final IdFormat idFormat;
+    private final List<Migration> migrations = List.of(
+            Migration.sql(1, "Create lendings table", "create table if not exists lendings (UserId VARCHAR(16), " +
+                    "GunId VARCHAR(16), AmmoId VARCHAR(16), AmmoAmount INT, ReservationDate DATETIME, " +
+                    "TotalPrice DECIMAL(10,2))"),
+            Migration.code(2, "Add composite primary key", connection -> {
+                if (!hasPrimaryKey(connection)) {
+                    rebuildWithPrimaryKey(connection);
+                }
+            }),
+            Migration.sql(3, "Index lookup columns",
+                    "create index if not exists lendings_gun_id on lendings (GunId)",
+                    "create index if not exists lendings_ammo_id on lendings (AmmoId)",
+                    "create index if not exists lendings_reservation_date on lendings (ReservationDate)"),
+            Migration.sql(4, "Index keyset pagination order",
+                    "create index if not exists lendings_reservation on lendings " +
+                            "(ReservationDate, UserId, GunId, AmmoId)",
+                    "create index if not exists lendings_user_reservation on lendings " +
+                            "(UserId, ReservationDate, GunId, AmmoId)",
+                    "drop index if exists lendings_reservation_date"),
+            Migration.code(5, "Store reservation dates with fixed width", LendingRepository::rewriteReservationDates)
+    );
+
+    public LendingRepository(Database database) {
+        this.database = database;
+        this.idFormat = database.getIdFormat();
     }
 
     public List<Lending> getLendings() throws RepositoryException {
-        var lendings = new ArrayList<Lending>();
+        try {
+            return database.read(connection -> {
+                var lendings = new ArrayList<Lending>();
 
-        try (var connection = getConnection()) {
-            try (var statement = connection.createStatement()) {
-                statement.setQueryTimeout(30);
+                try (var statement = connection.prepareStatement("select " + Lending.COLUMNS + " from lendings")) {
+                    statement.setQueryTimeout(30);
 
-                var rs = statement.executeQuery("select * from lendings");
+                    var rs = statement.executeQuery();
 
-                while (rs.next()) {
-                    lendings.add(Lending.fromResultSet(rs));
+                    while (rs.next()) {
+                        lendings.add(Lending.fromResultSet(rs));
+                    }
                 }
-            }
+
+                return lendings;
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot get all lending data from database", e);
         }
+    }
 
-        return lendings;
+    /**
+     * Passes every lending to the consumer in reservation order, reading them in pages so no read connection is
+     * held while the consumer works. Lendings changed while streaming may or may not be included.
+     */
+    public void streamLendings(RowConsumer<Lending> consumer) throws RepositoryException, IOException {
+        KeysetChunks.forEach(page -> getLendings(new LendingFilter(), page), consumer);
     }
 
-    public List<Lending> getLendingByUserId(UUID userId) throws RepositoryException {
-        var lendings = new ArrayList<Lending>();
+    public Page<Lending> getLendings(LendingFilter filter, PageRequest page) throws RepositoryException {
+        var query = new FilterQuery()
+                .whereSet("UserId = ?", filter.getUserId())
+                .whereSet("ReservationDate >= ?", filter.getReservedFrom() == null
+                        ? null : InstantColumns.format(filter.getReservedFrom()))
+                .whereSet("ReservationDate < ?", filter.getReservedTo() == null
+                        ? null : InstantColumns.format(filter.getReservedTo()));
+
+        if (page.cursor() != null) {
+            var key = Cursor.decode(page.cursor(), 4);
+            String reservationDate;
+            try {
+                reservationDate = InstantColumns.format(Instant.parse(key[0]));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Malformed cursor", e);
+            }
+            var userId = UUID.fromString(key[1]);
+            var gunId = UUID.fromString(key[2]);
+            var ammoId = UUID.fromString(key[3]);
+
+            // With the user fixed, leaving it out of the row value lets the (UserId, ReservationDate, ...) index
+            // serve the range
+            if (filter.getUserId() != null) {
+                query.where("(ReservationDate, GunId, AmmoId) > (?, ?, ?)", reservationDate, gunId, ammoId);
+            } else {
+                query.where("(ReservationDate, UserId, GunId, AmmoId) > (?, ?, ?, ?)", reservationDate, userId,
+                        gunId, ammoId);
+            }
+        }
 
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("select * from lendings where UserId = ?")) {
-                statement.setString(1, userId.toString());
-                statement.setQueryTimeout(30);
+        var sql = query.sql("select " + Lending.COLUMNS + " from lendings", "ReservationDate, UserId, GunId, AmmoId");
+
+        try {
+            return database.read(connection -> {
+                var lendings = new ArrayList<Lending>();
+
+                try (var statement = connection.prepareStatement(sql)) {
+                    query.bind(statement, idFormat, page.limit() + 1);
+                    statement.setQueryTimeout(30);
 
-                var rs = statement.executeQuery();
+                    var rs = statement.executeQuery();
 
-                while (rs.next()) {
-                    lendings.add(Lending.fromResultSet(rs));
+                    while (rs.next()) {
+                        lendings.add(Lending.fromResultSet(rs));
+                    }
                 }
-            }
+
+                return Page.fromRows(lendings, page.limit(), CURSOR_OF);
+            });
+        } catch (SQLException e) {
+            throw new RepositoryException("Cannot get lending data from database", e);
+        }
+    }
+
+    public List<Lending> getLendingByUserId(UUID userId) throws RepositoryException {
+        try {
+            return database.read(connection -> getLendingsBy("UserId", userId, connection));
         } catch (SQLException e) {
             var msg = String.format("Cannot get lendings with UserId '%s' from database", userId.toString());
             throw new RepositoryException(msg, e);
         }
+    }
 
-        return lendings;
+    /**
+     * Same as {@link #streamLendings(RowConsumer)} for the lendings of one user.
+     */
+    public void streamLendingsByUserId(UUID userId, RowConsumer<Lending> consumer)
+            throws RepositoryException, IOException {
+        var filter = new LendingFilter();
+        filter.setUserId(userId);
+        KeysetChunks.forEach(page -> getLendings(filter, page), consumer);
     }
 
     public List<Lending> getLendingByGunId(UUID gunId) throws RepositoryException {
-        var lendings = new ArrayList<Lending>();
-
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("select * from lendings where GunId = ?")) {
-                statement.setString(1, gunId.toString());
-                statement.setQueryTimeout(30);
-
-                var rs = statement.executeQuery();
-
-                while (rs.next()) {
-                    lendings.add(Lending.fromResultSet(rs));
-                }
-            }
+        try {
+            return database.read(connection -> getLendingsBy("GunId", gunId, connection));
         } catch (SQLException e) {
             var msg = String.format("Cannot get lendings with GunId '%s' from database", gunId.toString());
             throw new RepositoryException(msg, e);
         }
-
-        return lendings;
     }
 
     public List<Lending> getLendingByAmmoId(UUID ammoId) throws RepositoryException {
-        var lendings = new ArrayList<Lending>();
-
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("select * from lendings where AmmoId = ?")) {
-                statement.setString(1, ammoId.toString());
-                statement.setQueryTimeout(30);
-
-                var rs = statement.executeQuery();
-
-                while (rs.next()) {
-                    lendings.add(Lending.fromResultSet(rs));
-                }
-            }
+        try {
+            return database.read(connection -> getLendingsBy("AmmoId", ammoId, connection));
         } catch (SQLException e) {
             var msg = String.format("Cannot get lendings with AmmoId '%s' from database", ammoId.toString());
             throw new RepositoryException(msg, e);
         }
-
-        return lendings;
     }
 
     public Optional<Lending> getLending(UUID userId, UUID gunId, UUID ammoId) throws RepositoryException {
+        try {
+            return database.read(connection -> getLending(userId, gunId, ammoId, connection));
+        } catch (SQLException e) {
+            var msg = String.format("Cannot get lendings with AmmoId '%s' from database", ammoId.toString());
+            throw new RepositoryException(msg, e);
+        }
+    }
+
+    public Optional<Lending> getLending(UUID userId, UUID gunId, UUID ammoId, Connection connection)
+            throws RepositoryException {
         Optional<Lending> lending = Optional.empty();
 
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("select * from lendings where UserId = ? AND AmmoId = ?" +
-                    "AND GunId = ?")) {
-                statement.setString(1, userId.toString());
-                statement.setString(2, ammoId.toString());
-                statement.setString(3, gunId.toString());
-                statement.setQueryTimeout(30);
+        try (var statement = connection.prepareStatement("select " + Lending.COLUMNS + " from lendings " +
+                "where UserId = ? AND AmmoId = ? AND GunId = ?")) {
+            idFormat.bind(statement, 1, userId);
+            idFormat.bind(statement, 2, ammoId);
+            idFormat.bind(statement, 3, gunId);
+            statement.setQueryTimeout(30);
 
-                var rs = statement.executeQuery();
+            var rs = statement.executeQuery();
 
-                if (rs.next()) {
-                    lending = Optional.of(Lending.fromResultSet(rs));
-                }
+            if (rs.next()) {
+                lending = Optional.of(Lending.fromResultSet(rs));
             }
         } catch (SQLException e) {
             var msg = String.format("Cannot get lendings with AmmoId '%s' from database", ammoId.toString());
@@ -132,8 +219,11 @@ public class LendingRepository implements Repository {
     }
 
     public void addLending(Lending lending) throws RepositoryException {
-        try (var connection = getConnection()) {
-            addLending(lending, connection);
+        try {
+            database.write(connection -> {
+                addLending(lending, connection);
+                return null;
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot insert lending to database", e);
         }
@@ -143,22 +233,25 @@ public class LendingRepository implements Repository {
         try (var statement = connection.prepareStatement("insert into lendings values (?, ?, ?, ?, ?, ?)")) {
             statement.setQueryTimeout(30);
 
-            statement.setString(1, lending.getUserId().toString());
-            statement.setString(2, lending.getGunId().toString());
-            statement.setString(3, lending.getAmmoId().toString());
+            idFormat.bind(statement, 1, lending.getUserId());
+            idFormat.bind(statement, 2, lending.getGunId());
+            idFormat.bind(statement, 3, lending.getAmmoId());
             statement.setInt(4, lending.getAmmoAmount());
-            statement.setString(5, lending.getReservationDate().toString());
+            statement.setString(5, InstantColumns.format(lending.getReservationDate()));
             statement.setDouble(6, lending.getTotalPrice());
 
             statement.executeUpdate();
         } catch (SQLException e) {
-            throw new RepositoryException("Cannot insert lending to database", e);
+            throw writeFailure("Cannot insert lending to database", e);
         }
     }
 
     public void deleteLending(UUID userId, UUID gunId, UUID ammoId) throws RepositoryException {
-        try (var connection = getConnection()) {
-            deleteLending(userId, gunId, ammoId, connection);
+        try {
+            database.write(connection -> {
+                deleteLending(userId, gunId, ammoId, connection);
+                return null;
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot delete lending data from database", e);
         }
@@ -168,9 +261,9 @@ public class LendingRepository implements Repository {
             try (var statement = connection.prepareStatement("delete from lendings where UserId = ? AND GunId = ? " +
                     "AND AmmoId = ?")) {
                 statement.setQueryTimeout(30);
-                statement.setString(1, userId.toString());
-                statement.setString(2, gunId.toString());
-                statement.setString(3, ammoId.toString());
+                idFormat.bind(statement, 1, userId);
+                idFormat.bind(statement, 2, gunId);
+                idFormat.bind(statement, 3, ammoId);
 
                 statement.executeUpdate();
         } catch (SQLException e) {
@@ -180,8 +273,11 @@ public class LendingRepository implements Repository {
 
 
     public void updateLending(UpdateLendingDto updateLendingDto, double totalPrice) throws RepositoryException {
-        try (var connection = getConnection()) {
-            updateLending(updateLendingDto, totalPrice, connection);
+        try {
+            database.write(connection -> {
+                updateLending(updateLendingDto, totalPrice, connection);
+                return null;
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot update lending data in database", e);
         }
@@ -191,33 +287,150 @@ public class LendingRepository implements Repository {
             try (var statement = connection.prepareStatement("update lendings set GunId = ?, AmmoId = ?, AmmoAmount = ?," +
                     "ReservationDate = ?, TotalPrice = ? where UserId = ? AND GunId = ? AND AmmoId = ?")) {
                 statement.setQueryTimeout(30);
-                statement.setString(1, updateLendingDto.getNewGunId().toString());
-                statement.setString(2, updateLendingDto.getNewAmmoId().toString());
+                idFormat.bind(statement, 1, updateLendingDto.getNewGunId());
+                idFormat.bind(statement, 2, updateLendingDto.getNewAmmoId());
                 statement.setInt(3, updateLendingDto.getAmmoAmount());
-                statement.setString(4, updateLendingDto.getReservationDate().toString());
+                statement.setString(4, InstantColumns.format(updateLendingDto.getReservationDate()));
                 statement.setDouble(5, totalPrice);
-                statement.setString(6, updateLendingDto.getUserId().toString());
-                statement.setString(7, updateLendingDto.getOldGunId().toString());
-                statement.setString(8, updateLendingDto.getOldAmmoId().toString());
+                idFormat.bind(statement, 6, updateLendingDto.getUserId());
+                idFormat.bind(statement, 7, updateLendingDto.getOldGunId());
+                idFormat.bind(statement, 8, updateLendingDto.getOldAmmoId());
 
                 statement.executeUpdate();
         } catch (SQLException e) {
-            throw new RepositoryException("Cannot update lending data in database", e);
+            throw writeFailure("Cannot update lending data in database", e);
         }
     }
 
-    public void migrate() throws RepositoryException {
-        try (var connection = getConnection()) {
-            try (var statement = connection.createStatement()) {
-                statement.setQueryTimeout(30);
-                statement.executeUpdate(String.format("create table if not exists lendings %s", Lending.toSqlTableDefinition()));
+    @Override
+    public String getSchemaName() {
+        return "lendings";
+    }
+
+    @Override
+    public List<Migration> getMigrations() {
+        return migrations;
+    }
+
+    /**
+     * A write that would give a user the same gun and ammo twice collides with the lendings key.
+     */
+    private static RepositoryException writeFailure(String msg, SQLException e) {
+        if (e instanceof SQLiteException sqliteException
+                && sqliteException.getResultCode() == SQLiteErrorCode.SQLITE_CONSTRAINT_PRIMARYKEY) {
+            return new DuplicateLendingException("User already rents this gun with this ammo", e);
+        }
+        return new RepositoryException(msg, e);
+    }
+
+    private static boolean hasPrimaryKey(Connection connection) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            var rs = statement.executeQuery("pragma index_list('lendings')");
+
+            while (rs.next()) {
+                if ("pk".equals(rs.getString("origin"))) {
+                    return true;
+                }
             }
-        } catch (SQLException e) {
-            throw new RepositoryException("Cannot migrate 'lendings' table", e);
         }
+
+        return false;
+    }
+
+    /**
+     * Tables created before the composite key existed cannot get one through 'alter table', so they are copied
+     * into a new table. Rows sharing a (UserId, GunId, AmmoId) key are separate rentals holding their own stock,
+     * so instead of dropping or merging them the migration fails and lists them to be resolved by hand.
+     */
+    private void rebuildWithPrimaryKey(Connection connection) throws SQLException {
+        var duplicates = findDuplicateKeys(connection);
+
+        if (!duplicates.isEmpty()) {
+            var shown = duplicates.subList(0, Math.min(duplicates.size(), MAX_REPORTED_DUPLICATES));
+            var msg = String.format("%d lending keys are shared by several rows, resolve them before migrating: %s%s",
+                    duplicates.size(), String.join(", ", shown), duplicates.size() > shown.size() ? ", ..." : "");
+            throw new SQLException(msg);
+        }
+
+        try (var statement = connection.createStatement()) {
+            statement.setQueryTimeout(30);
+            statement.executeUpdate("create table lendings_new " + KEYED_DEFINITION);
+            statement.executeUpdate("insert into lendings_new select * from lendings order by rowid");
+            statement.executeUpdate("drop table lendings");
+            statement.executeUpdate("alter table lendings_new rename to lendings");
+        }
+    }
+
+    /**
+     * Rows written before the fixed width format hold {@link Instant#toString()} text, which does not sort by
+     * time once fractions differ in length.
+     */
+    private static void rewriteReservationDates(Connection connection) throws SQLException {
+        try (var query = connection.createStatement();
+             var update = connection.prepareStatement("update lendings set ReservationDate = ? where rowid = ?")) {
+            query.setQueryTimeout(30);
+            update.setQueryTimeout(30);
+
+            var rs = query.executeQuery("select rowid, ReservationDate from lendings " +
+                    "where ReservationDate is not null");
+
+            while (rs.next()) {
+                var stored = rs.getString(2);
+                try {
+                    update.setString(1, InstantColumns.format(Instant.parse(stored)));
+                } catch (DateTimeParseException e) {
+                    var msg = String.format("Lending row %d has an unreadable reservation date '%s'", rs.getLong(1),
+                            stored);
+                    throw new SQLException(msg, e);
+                }
+                update.setLong(2, rs.getLong(1));
+                update.addBatch();
+            }
+            rs.close();
+
+            update.executeBatch();
+        }
+    }
+
+    private List<String> findDuplicateKeys(Connection connection) throws SQLException {
+        var duplicates = new ArrayList<String>();
+
+        try (var statement = connection.createStatement()) {
+            statement.setQueryTimeout(30);
+
+            var rs = statement.executeQuery("select UserId, GunId, AmmoId, count(*) from lendings " +
+                    "group by UserId, GunId, AmmoId having count(*) > 1");
+
+            while (rs.next()) {
+                duplicates.add(String.format("user %s gun %s ammo %s (%d rows)", UuidColumns.read(rs, 1),
+                        UuidColumns.read(rs, 2), UuidColumns.read(rs, 3), rs.getInt(4)));
+            }
+        }
+
+        return duplicates;
+    }
+
+    private List<Lending> getLendingsBy(String column, UUID id, Connection connection) throws SQLException {
+        var lendings = new ArrayList<Lending>();
+
+        var sql = String.format("select %s from lendings where %s = ? order by rowid", Lending.COLUMNS, column);
+
+        try (var statement = connection.prepareStatement(sql)) {
+            idFormat.bind(statement, 1, id);
+            statement.setQueryTimeout(30);
+
+            var rs = statement.executeQuery();
+
+            while (rs.next()) {
+                lendings.add(Lending.fromResultSet(rs));
+            }
+        }
+
+        return lendings;
     }
 
-    public Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(databaseUrl);
+    @Override
+    public List<String> getIdColumns() {
+        return List.of("UserId", "GunId", "AmmoId");
     }
 }
@@ -0,0 +1,232 @@
+package gunlender.infrastructure.database;
+
+import gunlender.application.Migration;
+import gunlender.application.Repository;
+import gunlender.domain.entities.UuidColumns;
+import gunlender.domain.exceptions.RepositoryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Applies pending repository migrations and records them in the schema_version table. Every migration runs in
+ * its own transaction together with its schema_version row, so a failed step leaves no partial changes behind.
+ * Afterwards, ids stored in a different format than the configured {@link IdFormat} are converted, unless the
+ * id_format table shows the component was already converted to it.
+ */
+public class MigrationRunner {
+    private static final String SCHEMA_VERSION_DEFINITION = "(Component VARCHAR(64), Version INT, " +
+            "Description VARCHAR(256), Checksum VARCHAR(64), AppliedAt DATETIME, PRIMARY KEY (Component, Version))";
+    private static final String ID_FORMAT_DEFINITION = "(Component VARCHAR(64) PRIMARY KEY, Format VARCHAR(8), " +
+            "ConvertedAt DATETIME)";
+
+    /**
+     * Rows rewritten per write transaction, so converting a large table never holds the writer for long.
+     */
+    public static final int ID_CONVERSION_BATCH_SIZE = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(MigrationRunner.class);
+    private final Database database;
+
+    public MigrationRunner(Database database) {
+        this.database = database;
+    }
+
+    public void migrate(Repository... repositories) throws RepositoryException {
+        createTable("schema_version", SCHEMA_VERSION_DEFINITION);
+        createTable("id_format", ID_FORMAT_DEFINITION);
+
+        for (var repository : repositories) {
+            migrate(repository);
+        }
+    }
+
+    private void migrate(Repository repository) throws RepositoryException {
+        var component = repository.getSchemaName();
+        var applied = getAppliedChecksums(component);
+        var previousVersion = 0;
+
+        for (var migration : repository.getMigrations()) {
+            if (migration.version() <= previousVersion) {
+                var msg = String.format("Migrations of '%s' are not in ascending order at version %d",
+                        component, migration.version());
+                throw new RepositoryException(msg);
+            }
+            previousVersion = migration.version();
+
+            var checksum = applied.get(migration.version());
+
+            if (checksum == null) {
+                apply(component, migration);
+            } else if (!checksum.equals(migration.checksum())) {
+                var msg = String.format("Checksum of applied migration '%s' version %d does not match its source",
+                        component, migration.version());
+                throw new RepositoryException(msg);
+            }
+        }
+
+        convertIds(repository);
+    }
+
+    private void apply(String component, Migration migration) throws RepositoryException {
+        try {
+            database.write(connection -> {
+                try (var statement = connection.createStatement()) {
+                    statement.setQueryTimeout(30);
+                    for (var sql : migration.statements()) {
+                        statement.executeUpdate(sql);
+                    }
+                }
+
+                if (migration.step() != null) {
+                    migration.step().apply(connection);
+                }
+
+                try (var statement = connection.prepareStatement("insert into schema_version values (?, ?, ?, ?, ?)")) {
+                    statement.setString(1, component);
+                    statement.setInt(2, migration.version());
+                    statement.setString(3, migration.description());
+                    statement.setString(4, migration.checksum());
+                    statement.setString(5, Instant.now().toString());
+                    return statement.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            var msg = String.format("Cannot apply migration '%s' version %d", component, migration.version());
+            throw new RepositoryException(msg, e);
+        }
+
+        logger.info("Applied migration {} v{}: {}", component, migration.version(), migration.description());
+    }
+
+    /**
+     * SQLite never coerces blobs through column affinity, so both formats fit the existing id columns and only
+     * the values need to be rewritten. The format is recorded only once no id of another format is left, so an
+     * interrupted conversion resumes on the next start.
+     */
+    private void convertIds(Repository repository) throws RepositoryException {
+        var table = repository.getSchemaName();
+        var format = database.getIdFormat();
+
+        if (format.name().equals(getRecordedIdFormat(table))) {
+            return;
+        }
+
+        var converted = 0;
+
+        try {
+            for (var column : repository.getIdColumns()) {
+                int batch;
+                do {
+                    batch = database.write(connection -> convertIdBatch(connection, table, column, format));
+                    converted += batch;
+                } while (batch == ID_CONVERSION_BATCH_SIZE);
+            }
+
+            database.write(connection -> {
+                try (var statement = connection.prepareStatement("insert or replace into id_format values (?, ?, ?)")) {
+                    statement.setString(1, table);
+                    statement.setString(2, format.name());
+                    statement.setString(3, Instant.now().toString());
+                    return statement.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            var msg = String.format("Cannot convert ids of '%s' to %s", table, format);
+            throw new RepositoryException(msg, e);
+        }
+
+        if (converted > 0) {
+            logger.info("Converted {} ids of {} to {}", converted, table, format);
+        }
+    }
+
+    private static int convertIdBatch(Connection connection, String table, String column, IdFormat format)
+            throws SQLException {
+        var select = String.format("select rowid, %s from %s where typeof(%s) not in ('null', ?) limit ?",
+                column, table, column);
+        var update = String.format("update %s set %s = ? where rowid = ?", table, column);
+        var count = 0;
+
+        try (var query = connection.prepareStatement(select);
+             var statement = connection.prepareStatement(update)) {
+            query.setString(1, format.sqliteType());
+            query.setInt(2, ID_CONVERSION_BATCH_SIZE);
+            statement.setQueryTimeout(30);
+
+            var rs = query.executeQuery();
+
+            while (rs.next()) {
+                format.bind(statement, 1, UuidColumns.read(rs, column));
+                statement.setLong(2, rs.getLong(1));
+                statement.addBatch();
+                count++;
+            }
+            rs.close();
+
+            statement.executeBatch();
+        }
+
+        return count;
+    }
+
+    private String getRecordedIdFormat(String component) throws RepositoryException {
+        try {
+            return database.read(connection -> {
+                try (var statement = connection.prepareStatement("select Format from id_format " +
+                        "where Component = ?")) {
+                    statement.setString(1, component);
+
+                    var rs = statement.executeQuery();
+                    return rs.next() ? rs.getString(1) : null;
+                }
+            });
+        } catch (SQLException e) {
+            var msg = String.format("Cannot read id format of '%s'", component);
+            throw new RepositoryException(msg, e);
+        }
+    }
+
+    private Map<Integer, String> getAppliedChecksums(String component) throws RepositoryException {
+        try {
+            return database.read(connection -> {
+                var applied = new HashMap<Integer, String>();
+
+                try (var statement = connection.prepareStatement("select Version, Checksum from schema_version " +
+                        "where Component = ?")) {
+                    statement.setString(1, component);
+
+                    var rs = statement.executeQuery();
+
+                    while (rs.next()) {
+                        applied.put(rs.getInt("Version"), rs.getString("Checksum"));
+                    }
+                }
+
+                return applied;
+            });
+        } catch (SQLException e) {
+            var msg = String.format("Cannot read applied migrations of '%s'", component);
+            throw new RepositoryException(msg, e);
+        }
+    }
+
+    private void createTable(String name, String definition) throws RepositoryException {
+        try {
+            database.write(connection -> {
+                try (var statement = connection.createStatement()) {
+                    statement.setQueryTimeout(30);
+                    return statement.executeUpdate(String.format("create table if not exists %s %s", name,
+                            definition));
+                }
+            });
+        } catch (SQLException e) {
+            throw new RepositoryException(String.format("Cannot create '%s' table", name), e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package gunlender.infrastructure.database;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class PoolConfig {
+    private int maximumPoolSize = 8;
+    private long acquireTimeoutMillis = 5_000;
+    private long validationIntervalMillis = 30_000;
+    private int validationTimeoutSeconds = 2;
+    private long leakDetectionThresholdMillis = 60_000;
+    private int statementCacheSize = 64;
+
+    public static PoolConfig fromEnvironment() {
+        var config = new PoolConfig();
+        config.setMaximumPoolSize(intFromEnv("GUNLENDER_DB_POOL_SIZE", config.getMaximumPoolSize()));
+        config.setAcquireTimeoutMillis(longFromEnv("GUNLENDER_DB_ACQUIRE_TIMEOUT_MS", config.getAcquireTimeoutMillis()));
+        config.setValidationIntervalMillis(longFromEnv("GUNLENDER_DB_VALIDATION_INTERVAL_MS",
+                config.getValidationIntervalMillis()));
+        config.setValidationTimeoutSeconds(intFromEnv("GUNLENDER_DB_VALIDATION_TIMEOUT_S",
+                config.getValidationTimeoutSeconds()));
+        config.setLeakDetectionThresholdMillis(longFromEnv("GUNLENDER_DB_LEAK_DETECTION_MS",
+                config.getLeakDetectionThresholdMillis()));
+        config.setStatementCacheSize(intFromEnv("GUNLENDER_DB_STATEMENT_CACHE_SIZE", config.getStatementCacheSize()));
+        return config;
+    }
+
+    static int intFromEnv(String name, int defaultValue) {
+        var value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    static long longFromEnv(String name, long defaultValue) {
+        var value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+    }
+}
@@ -0,0 +1,11 @@
+package gunlender.infrastructure.database;
+
+import java.io.IOException;
+
+/**
+ * Receives rows one by one while the query is still running, e.g. to write them straight to a response.
+ */
+@FunctionalInterface
+public interface RowConsumer<T> {
+    void accept(T row) throws IOException;
+}
@@ -0,0 +1,11 @@
+package gunlender.infrastructure.database;
+
+import gunlender.domain.exceptions.RepositoryException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface SqlWork<T> {
+    T execute(Connection connection) throws SQLException, RepositoryException;
+}
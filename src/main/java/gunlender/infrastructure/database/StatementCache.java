@@ -0,0 +1,177 @@
+package gunlender.infrastructure.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Least recently used cache of prepared statements of a single physical connection, keyed by SQL text.
+ * <p>
+ * Callers get a proxy whose {@code close()} resets the statement and hands it back to the cache, so SQLite only
+ * parses and plans each statement once per connection. Like the connection itself, the cache is only used by the
+ * thread currently holding the connection.
+ */
+final class StatementCache {
+    private final Logger logger = LoggerFactory.getLogger(StatementCache.class);
+    private final Connection physical;
+    private final int maximumSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LinkedHashMap<String, Entry> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection physical, int maximumSize, LongAdder hits, LongAdder misses) {
+        this.physical = physical;
+        this.maximumSize = maximumSize;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+        var entry = statements.get(sql);
+
+        if (entry != null && entry.checkout == null) {
+            hits.increment();
+            return entry.checkOut();
+        }
+
+        misses.increment();
+
+        // The same SQL is still open further up the stack, so this caller gets a private statement
+        if (entry != null) {
+            return physical.prepareStatement(sql);
+        }
+
+        entry = new Entry(physical.prepareStatement(sql));
+        statements.put(sql, entry);
+        evict();
+        return entry.checkOut();
+    }
+
+    /**
+     * Takes back statements the previous holder of the connection did not close.
+     */
+    void reset() {
+        for (var entry : statements.values().toArray(new Entry[0])) {
+            if (entry.checkout != null) {
+                entry.checkIn();
+            }
+        }
+    }
+
+    void close() {
+        for (var entry : statements.values()) {
+            entry.close();
+        }
+        statements.clear();
+    }
+
+    private void evict() {
+        var iterator = statements.values().iterator();
+
+        while (statements.size() > maximumSize && iterator.hasNext()) {
+            var entry = iterator.next();
+            if (entry.checkout == null) {
+                iterator.remove();
+                entry.close();
+            }
+        }
+    }
+
+    private final class Entry {
+        private final PreparedStatement statement;
+        private Checkout checkout;
+        private ResultSet resultSet;
+
+        private Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        private PreparedStatement checkOut() {
+            checkout = new Checkout(this);
+            return checkout.proxy;
+        }
+
+        private void checkIn() {
+            checkout.returned = true;
+            checkout = null;
+
+            try {
+                if (resultSet != null) {
+                    resultSet.close();
+                    resultSet = null;
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+            } catch (SQLException e) {
+                logger.warn("Cannot reset cached statement, discarding it", e);
+                statements.values().remove(this);
+                close();
+            }
+        }
+
+        private void close() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                logger.warn("Cannot close cached statement", e);
+            }
+        }
+    }
+
+    private final class Checkout implements InvocationHandler {
+        private final Entry entry;
+        private final PreparedStatement proxy;
+        private boolean returned;
+
+        private Checkout(Entry entry) {
+            this.entry = entry;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        entry.checkIn();
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || entry.statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + entry.statement;
+                default:
+                    break;
+            }
+
+            if (returned) {
+                throw new SQLException("Statement has already been closed");
+            }
+
+            try {
+                var result = method.invoke(entry.statement, args);
+                if (result instanceof ResultSet rs) {
+                    entry.resultSet = rs;
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
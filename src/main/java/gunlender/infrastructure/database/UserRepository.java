@@ -1,183 +1,279 @@
 package gunlender.infrastructure.database;
 
+import gunlender.application.Cursor;
+import gunlender.application.Migration;
+import gunlender.application.Page;
+import gunlender.application.PageRequest;
 import gunlender.application.Repository;
 import gunlender.application.dto.UpdateUserDto;
 import gunlender.domain.entities.User;
 import gunlender.domain.exceptions.RepositoryException;
 import gunlender.domain.services.AuthManager;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 
 public class UserRepository implements Repository {
-    private final String databaseUrl;
+    private static final List<Migration> MIGRATIONS = List.of(
+            Migration.sql(1, "Create users table", "create table if not exists users (Id VARCHAR(16) UNIQUE, " +
+                    "FirstName VARCHAR(64), LastName VARCHAR(128), Email VARCHAR(64) UNIQUE, " +
+                    "PasswordHash VARCHAR(512), PhoneNumber VARCHAR(9) UNIQUE, AccountType VARCHAR(32))")
+    );
 
-    public UserRepository(String databaseUrl) {
-        this.databaseUrl = databaseUrl;
+    private static final Function<User, String> CURSOR_OF = user -> Cursor.encode(user.getId().toString());
+
+    private final Database database;
+    private final IdFormat idFormat;
+
+    public UserRepository(Database database) {
+        this.database = database;
+        this.idFormat = database.getIdFormat();
     }
 
     public List<User> getUsers() throws RepositoryException {
-        var users = new ArrayList<User>();
+        try {
+            return database.read(connection -> {
+                var users = new ArrayList<User>();
 
-        try (var connection = getConnection()) {
-            try (var statement = connection.createStatement()) {
+                try (var statement = connection.prepareStatement("select " + User.COLUMNS + " from users")) {
 
-                statement.setQueryTimeout(30);
+                    statement.setQueryTimeout(30);
 
-                var rs = statement.executeQuery("select * from users");
+                    var rs = statement.executeQuery();
 
-                while (rs.next()) {
-                    users.add(User.fromResultSet(rs));
+                    while (rs.next()) {
+                        users.add(User.fromResultSet(rs));
+                    }
                 }
-            }
+
+                return users;
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot get users from database", e);
         }
+    }
+
+    /**
+     * Passes every user to the consumer in id order, reading them in pages so no read connection is held while the
+     * consumer works. Users changed while streaming may or may not be included.
+     */
+    public void streamUsers(RowConsumer<User> consumer) throws RepositoryException, IOException {
+        KeysetChunks.forEach(this::getUsers, consumer);
+    }
+
+    public Page<User> getUsers(PageRequest page) throws RepositoryException {
+        var query = new FilterQuery();
+
+        if (page.cursor() != null) {
+            query.where("Id > ?", UUID.fromString(Cursor.decode(page.cursor(), 1)[0]));
+        }
 
-        return users;
+        var sql = query.sql("select " + User.COLUMNS + " from users", "Id");
+
+        try {
+            return database.read(connection -> {
+                var users = new ArrayList<User>();
+
+                try (var statement = connection.prepareStatement(sql)) {
+                    query.bind(statement, idFormat, page.limit() + 1);
+                    statement.setQueryTimeout(30);
+
+                    var rs = statement.executeQuery();
+
+                    while (rs.next()) {
+                        users.add(User.fromResultSet(rs));
+                    }
+                }
+
+                return Page.fromRows(users, page.limit(), CURSOR_OF);
+            });
+        } catch (SQLException e) {
+            throw new RepositoryException("Cannot get users from database", e);
+        }
     }
 
     public Optional<User> getUserById(UUID uuid) throws RepositoryException {
-        Optional<User> user = Optional.empty();
+        try {
+            return database.read(connection -> {
+                Optional<User> user = Optional.empty();
 
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("select * from users where Id = ?")) {
-                statement.setString(1, uuid.toString());
-                statement.setQueryTimeout(30);
+                try (var statement = connection.prepareStatement("select " + User.COLUMNS + " from users " +
+                        "where Id = ?")) {
+                    idFormat.bind(statement, 1, uuid);
+                    statement.setQueryTimeout(30);
 
-                var rs = statement.executeQuery();
+                    var rs = statement.executeQuery();
 
-                if (rs.next()) {
-                    user = Optional.of(User.fromResultSet(rs));
+                    if (rs.next()) {
+                        user = Optional.of(User.fromResultSet(rs));
+                    }
                 }
-            }
+
+                return user;
+            });
         } catch (SQLException e) {
             var msg = String.format("Cannot get user with id '%s' from database", uuid.toString());
             throw new RepositoryException(msg, e);
         }
-
-        return user;
     }
 
     public Optional<User> getUserByEmail(String email) throws RepositoryException {
-        Optional<User> user = Optional.empty();
+        try {
+            return database.read(connection -> {
+                Optional<User> user = Optional.empty();
 
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("select * from users where Email = ?")) {
-                statement.setString(1, email);
-                statement.setQueryTimeout(30);
+                try (var statement = connection.prepareStatement("select " + User.COLUMNS + " from users " +
+                        "where Email = ?")) {
+                    statement.setString(1, email);
+                    statement.setQueryTimeout(30);
 
-                var rs = statement.executeQuery();
+                    var rs = statement.executeQuery();
 
-                if (rs.next()) {
-                    user = Optional.of(User.fromResultSet(rs));
+                    if (rs.next()) {
+                        user = Optional.of(User.fromResultSet(rs));
+                    }
                 }
-            }
+
+                return user;
+            });
         } catch (SQLException e) {
             var msg = String.format("Cannot get user with email address '%s' from database", email);
             throw new RepositoryException(msg, e);
         }
-
-        return user;
     }
 
     public void addUser(User user) throws RepositoryException {
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("insert into users values (?, ? ,? ,?, ? ,?, ?)")) {
-                statement.setQueryTimeout(30);
-
-                statement.setString(1, user.getId().toString());
-                statement.setString(2, user.getFirstName());
-                statement.setString(3, user.getLastName());
-                statement.setString(4, user.getEmail());
-                statement.setString(5, user.getPasswordHash());
-                statement.setString(6, user.getPhoneNumber());
-                statement.setString(7, user.getAccountType().name());
-
-                statement.executeUpdate();
-            }
+        try {
+            database.write(connection -> {
+                try (var statement = connection.prepareStatement("insert into users values (?, ? ,? ,?, ? ,?, ?)")) {
+                    statement.setQueryTimeout(30);
+
+                    idFormat.bind(statement, 1, user.getId());
+                    statement.setString(2, user.getFirstName());
+                    statement.setString(3, user.getLastName());
+                    statement.setString(4, user.getEmail());
+                    statement.setString(5, user.getPasswordHash());
+                    statement.setString(6, user.getPhoneNumber());
+                    statement.setString(7, user.getAccountType().name());
+
+                    return statement.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot insert user to database", e);
         }
     }
 
     public void deleteUser(UUID id) throws RepositoryException {
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("delete from users where id = ?")) {
-                statement.setQueryTimeout(30);
-                statement.setString(1, id.toString());
+        try {
+            database.write(connection -> {
+                try (var statement = connection.prepareStatement("delete from users where id = ?")) {
+                    statement.setQueryTimeout(30);
+                    idFormat.bind(statement, 1, id);
 
-                statement.executeUpdate();
-            }
+                    return statement.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot delete user form database", e);
         }
     }
 
     public void updateUser(UUID id, UpdateUserDto user) throws RepositoryException {
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("update users set FirstName = ?, LastName = ?, " +
-                    "Email = ?, PhoneNumber = ? where Id = ?")) {
-                statement.setQueryTimeout(30);
-
-                statement.setString(1, user.getFirstName());
-                statement.setString(2, user.getLastName());
-                statement.setString(3, user.getEmail());
-                statement.setString(4, user.getPhoneNumber());
-                statement.setString(5, id.toString());
-
-                statement.executeUpdate();
-            }
+        try {
+            database.write(connection -> {
+                try (var statement = connection.prepareStatement("update users set FirstName = ?, LastName = ?, " +
+                        "Email = ?, PhoneNumber = ? where Id = ?")) {
+                    statement.setQueryTimeout(30);
+
+                    statement.setString(1, user.getFirstName());
+                    statement.setString(2, user.getLastName());
+                    statement.setString(3, user.getEmail());
+                    statement.setString(4, user.getPhoneNumber());
+                    idFormat.bind(statement, 5, id);
+
+                    return statement.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot insert user to database", e);
         }
     }
 
     public void updateUserPassword(UUID id, String passwordHash) throws RepositoryException {
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("update users set PasswordHash = ? where Id = ?")) {
-                statement.setQueryTimeout(30);
+        try {
+            database.write(connection -> {
+                try (var statement = connection.prepareStatement("update users set PasswordHash = ? where Id = ?")) {
+                    statement.setQueryTimeout(30);
 
-                statement.setString(1, passwordHash);
-                statement.setString(2, id.toString());
+                    statement.setString(1, passwordHash);
+                    idFormat.bind(statement, 2, id);
 
-                statement.executeUpdate();
-            }
+                    return statement.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot insert user to database", e);
         }
     }
 
+    /**
+     * Replaces the hash only while it is still {@code expected}, so an upgrade computed from an old hash cannot
+     * undo a password change that landed in the meantime. Returns whether the hash was replaced.
+     */
+    public boolean replaceUserPassword(UUID id, String expected, String passwordHash) throws RepositoryException {
+        try {
+            return database.write(connection -> {
+                try (var statement = connection.prepareStatement(
+                        "update users set PasswordHash = ? where Id = ? and PasswordHash = ?")) {
+                    statement.setQueryTimeout(30);
+
+                    statement.setString(1, passwordHash);
+                    idFormat.bind(statement, 2, id);
+                    statement.setString(3, expected);
+
+                    return statement.executeUpdate() == 1;
+                }
+            });
+        } catch (SQLException e) {
+            throw new RepositoryException("Cannot update user password in database", e);
+        }
+    }
+
     public void updateUserRole(UUID id, AuthManager.Role role) throws RepositoryException {
-        try (var connection = getConnection()) {
-            try (var statement = connection.prepareStatement("update users set AccountType = ? where Id = ?")) {
-                statement.setQueryTimeout(30);
+        try {
+            database.write(connection -> {
+                try (var statement = connection.prepareStatement("update users set AccountType = ? where Id = ?")) {
+                    statement.setQueryTimeout(30);
 
-                statement.setString(1, AuthManager.roleToString(role));
-                statement.setString(2, id.toString());
+                    statement.setString(1, AuthManager.roleToString(role));
+                    idFormat.bind(statement, 2, id);
 
-                statement.executeUpdate();
-            }
+                    return statement.executeUpdate();
+                }
+            });
         } catch (SQLException e) {
             throw new RepositoryException("Cannot insert user to database", e);
         }
     }
 
-    public void migrate() throws RepositoryException {
-        try (var connection = getConnection()) {
-            try (var statement = connection.createStatement()) {
-                statement.setQueryTimeout(30);
-                statement.executeUpdate(String.format("create table if not exists users %s", User.toSqlTableDefinition()));
-            }
-        } catch (SQLException e) {
-            throw new RepositoryException("Cannot migrate 'users' table", e);
-        }
+    @Override
+    public String getSchemaName() {
+        return "users";
+    }
+
+    @Override
+    public List<Migration> getMigrations() {
+        return MIGRATIONS;
     }
 
-    private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(databaseUrl);
+    @Override
+    public List<String> getIdColumns() {
+        return List.of("Id");
     }
 }
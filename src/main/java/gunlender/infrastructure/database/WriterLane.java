@@ -0,0 +1,349 @@
+package gunlender.infrastructure.database;
+
+import gunlender.domain.exceptions.RepositoryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serializes all writes onto one thread that owns the only writable connection, so SQLite never sees two
+ * writers competing for the database lock.
+ * <p>
+ * Work that is already queued when the writer becomes free is committed together in one transaction (group
+ * commit). Each unit runs inside its own savepoint, so a failing unit is rolled back alone and only its caller
+ * sees the error; everyone else is released once the shared commit has succeeded.
+ * <p>
+ * A unit or after-commit action throwing an {@link Error} fails only its own caller. Should the writer thread
+ * still die, the lane closes and fails every queued write instead of leaving callers waiting forever.
+ */
+public class WriterLane implements AutoCloseable {
+    private final Logger logger = LoggerFactory.getLogger(WriterLane.class);
+    private final ConnectionPool connectionPool;
+    private final long groupCommitWindowNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<WriteTask<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private final LongAdder executedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final AtomicLong maxBatch = new AtomicLong();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private volatile boolean running = true;
+    // Only touched by the writer thread
+    private WriteTask<?> current;
+
+    public WriterLane(ConnectionPool connectionPool, long groupCommitWindowMillis, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+
+        this.connectionPool = connectionPool;
+        this.groupCommitWindowNanos = TimeUnit.MILLISECONDS.toNanos(groupCommitWindowMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.thread = new Thread(this::run, "database-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public <T> T submit(SqlWork<T> work) throws SQLException, RepositoryException {
+        return submit(work, false);
+    }
+
+    /**
+     * Submits work that may wait up to the group commit window for other writes to share its commit with.
+     * Meant for bursty mutations such as lendings, where one fsync per request is the throughput limit.
+     */
+    public <T> T submitGrouped(SqlWork<T> work) throws SQLException, RepositoryException {
+        return submit(work, true);
+    }
+
+    private <T> T submit(SqlWork<T> work, boolean grouped) throws SQLException, RepositoryException {
+        if (Thread.currentThread() == thread) {
+            throw new IllegalStateException("Nested write submitted from the writer thread");
+        }
+
+        if (!running) {
+            throw new SQLException("Writer lane is closed");
+        }
+
+        var task = new WriteTask<>(work, grouped);
+        queue.add(task);
+
+        // The writer may have stopped between the check above and the add
+        if (!running && queue.remove(task)) {
+            throw new SQLException("Writer lane is closed");
+        }
+
+        return task.await();
+    }
+
+    /**
+     * Runs the action once the write currently executing on the writer thread has committed, e.g. to invalidate
+     * caches of the rows it changed. Nothing runs if that write is rolled back. Outside a write the action runs
+     * right away.
+     */
+    public void afterCommit(Runnable action) {
+        if (Thread.currentThread() == thread && current != null) {
+            current.afterCommit.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    boolean isWriterThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    public Stats getStats() {
+        return new Stats(
+                queue.size(),
+                executedCount.sum(),
+                failedCount.sum(),
+                batchCount.sum(),
+                maxBatch.get(),
+                TimeUnit.NANOSECONDS.toMillis(waitNanos.sum()),
+                TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get())
+        );
+    }
+
+    @Override
+    public void close() {
+        running = false;
+
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        failQueued(new SQLException("Writer lane is closed"));
+    }
+
+    private void run() {
+        // Tasks taken off the queue but possibly not completed yet
+        var batch = new ArrayList<WriteTask<?>>(Math.min(maxBatchSize, 64));
+
+        try {
+            while (running || !queue.isEmpty()) {
+                WriteTask<?> first;
+
+                try {
+                    first = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+
+                if (first != null) {
+                    batch.add(first);
+                    collectBatch(batch);
+                    execute(batch);
+                    batch.clear();
+                }
+            }
+        } catch (Throwable ex) {
+            running = false;
+            logger.error("Writer thread died, closing the writer lane", ex);
+
+            var failure = new SQLException("Writer lane stopped after an unexpected failure", ex);
+            for (var task : batch) {
+                fail(task, failure);
+            }
+            failQueued(failure);
+        }
+    }
+
+    private void failQueued(SQLException failure) {
+        WriteTask<?> task;
+        while ((task = queue.poll()) != null) {
+            fail(task, failure);
+        }
+    }
+
+    /**
+     * Counted before completing, so a caller that has joined the future sees it in the stats.
+     */
+    private void fail(WriteTask<?> task, Throwable failure) {
+        if (!task.future.isDone()) {
+            failedCount.increment();
+            task.future.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Adds queued tasks to the batch, which holds the first one taken off the queue.
+     */
+    private void collectBatch(List<WriteTask<?>> batch) {
+        queue.drainTo(batch, maxBatchSize - 1);
+
+        var linger = groupCommitWindowNanos > 0 && batch.stream().anyMatch(task -> task.grouped);
+        var deadline = System.nanoTime() + groupCommitWindowNanos;
+
+        while (linger && batch.size() < maxBatchSize) {
+            var remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+
+            try {
+                var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+                queue.drainTo(batch, maxBatchSize - batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        for (var task : batch) {
+            recordWait(task);
+        }
+
+        batchCount.increment();
+        maxBatch.accumulateAndGet(batch.size(), Math::max);
+    }
+
+    private void execute(List<WriteTask<?>> batch) {
+        var succeeded = new ArrayList<WriteTask<?>>(batch.size());
+
+        try (var connection = connectionPool.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                for (var task : batch) {
+                    if (executeInSavepoint(task, connection)) {
+                        succeeded.add(task);
+                    }
+                }
+
+                connection.commit();
+            } catch (Throwable ex) {
+                rollback(connection);
+                throw ex;
+            }
+
+            for (var task : succeeded) {
+                runAfterCommit(task);
+                executedCount.increment();
+                task.complete();
+            }
+        } catch (Throwable ex) {
+            // Only this thread completes tasks, so the ones not done yet are exactly those failing now
+            for (var task : batch) {
+                fail(task, ex);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the task succeeded. Throws only when the savepoint itself cannot be managed, which leaves
+     * the whole transaction unusable.
+     */
+    private boolean executeInSavepoint(WriteTask<?> task, Connection connection) throws SQLException {
+        var savepoint = connection.setSavepoint();
+        current = task;
+
+        try {
+            task.execute(connection);
+            connection.releaseSavepoint(savepoint);
+            return true;
+        } catch (Throwable ex) {
+            task.afterCommit.clear();
+            connection.rollback(savepoint);
+            connection.releaseSavepoint(savepoint);
+            failedCount.increment();
+            task.future.completeExceptionally(ex);
+            return false;
+        } finally {
+            current = null;
+        }
+    }
+
+    private void runAfterCommit(WriteTask<?> task) {
+        for (var action : task.afterCommit) {
+            try {
+                action.run();
+            } catch (Throwable ex) {
+                logger.error("After commit action failed", ex);
+            }
+        }
+    }
+
+    private void rollback(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException ex) {
+            logger.error("Cannot rollback transaction", ex);
+        }
+    }
+
+    private void recordWait(WriteTask<?> task) {
+        var waited = System.nanoTime() - task.enqueuedNanos;
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    public record Stats(int queueDepth, long executed, long failed, long batches, long maxBatchSize,
+                        long totalWaitMillis, long maxWaitMillis) {
+    }
+
+    private static final class WriteTask<T> {
+        private final SqlWork<T> work;
+        private final boolean grouped;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long enqueuedNanos = System.nanoTime();
+        private final List<Runnable> afterCommit = new ArrayList<>(0);
+        private T result;
+
+        private WriteTask(SqlWork<T> work, boolean grouped) {
+            this.work = work;
+            this.grouped = grouped;
+        }
+
+        private void execute(Connection connection) throws SQLException, RepositoryException {
+            result = work.execute(connection);
+        }
+
+        private void complete() {
+            future.complete(result);
+        }
+
+        private T await() throws SQLException, RepositoryException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for write to complete", e);
+            } catch (ExecutionException e) {
+                var cause = e.getCause();
+                if (cause instanceof SQLException sqlException) {
+                    throw sqlException;
+                }
+                if (cause instanceof RepositoryException repositoryException) {
+                    throw repositoryException;
+                }
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw new SQLException("Write failed", cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package gunlender.infrastructure.metrics;
+
+/**
+ * Anything that can write its current values in the Prometheus text format.
+ */
+@FunctionalInterface
+public interface Collector {
+    void collect(PrometheusWriter writer);
+}
@@ -0,0 +1,38 @@
+package gunlender.infrastructure.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One counter per combination of label values, created on first use.
+ */
+public final class CounterFamily implements Collector {
+    private final String name;
+    private final String help;
+    private final List<String> labelNames;
+    private final Map<List<String>, LongAdder> counters = new ConcurrentHashMap<>();
+
+    public CounterFamily(String name, String help, String... labelNames) {
+        this.name = name;
+        this.help = help;
+        this.labelNames = List.of(labelNames);
+    }
+
+    public LongAdder labels(String... labelValues) {
+        if (labelValues.length != labelNames.size()) {
+            throw new IllegalArgumentException(String.format("%s expects %d labels", name, labelNames.size()));
+        }
+
+        var key = List.of(labelValues);
+        var counter = counters.get(key);
+        return counter != null ? counter : counters.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        writer.header(name, "counter", help);
+        counters.forEach((labelValues, counter) -> writer.sample(name, labelNames, labelValues, counter.sum()));
+    }
+}
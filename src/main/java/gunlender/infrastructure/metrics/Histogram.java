@@ -0,0 +1,74 @@
+package gunlender.infrastructure.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets. Recording is a bucket search over a few longs and two
+ * {@link LongAdder} increments, so concurrent threads never contend on a lock or a single counter.
+ */
+public final class Histogram {
+    /**
+     * Bucket upper bounds in seconds, from half a millisecond to ten seconds.
+     */
+    public static final double[] LATENCY_BUCKETS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private final double[] bounds;
+    private final long[] boundsNanos;
+    // One more than the bounds, the last one counts everything above the largest bound
+    private final LongAdder[] buckets;
+    private final LongAdder sumNanos = new LongAdder();
+
+    public Histogram(double[] bounds) {
+        this.bounds = bounds.clone();
+        this.boundsNanos = new long[bounds.length];
+        this.buckets = new LongAdder[bounds.length + 1];
+
+        for (int i = 0; i < bounds.length; i++) {
+            if (i > 0 && bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Bucket bounds must be increasing");
+            }
+            boundsNanos[i] = (long) (bounds[i] * TimeUnit.SECONDS.toNanos(1));
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void observeNanos(long nanos) {
+        var bucket = 0;
+        while (bucket < boundsNanos.length && nanos > boundsNanos[bucket]) {
+            bucket++;
+        }
+
+        buckets[bucket].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Counts are read one bucket at a time while others may still be recording, so a snapshot can be off by the
+     * observations made during the read. The cumulative counts never decrease from one bucket to the next.
+     */
+    public Snapshot snapshot() {
+        var cumulative = new long[buckets.length];
+        var total = 0L;
+
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i].sum();
+            cumulative[i] = total;
+        }
+
+        return new Snapshot(bounds, cumulative, sumNanos.sum() / 1e9);
+    }
+
+    /**
+     * @param cumulativeCounts observations at or below each bound, the last entry is the total count
+     */
+    public record Snapshot(double[] bounds, long[] cumulativeCounts, double sumSeconds) {
+        public long count() {
+            return cumulativeCounts[cumulativeCounts.length - 1];
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package gunlender.infrastructure.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One histogram per combination of label values, created on first use.
+ */
+public final class HistogramFamily implements Collector {
+    private final String name;
+    private final String help;
+    private final List<String> labelNames;
+    private final double[] bounds;
+    private final Map<List<String>, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public HistogramFamily(String name, String help, String... labelNames) {
+        this(name, help, Histogram.LATENCY_BUCKETS, labelNames);
+    }
+
+    public HistogramFamily(String name, String help, double[] bounds, String... labelNames) {
+        this.name = name;
+        this.help = help;
+        this.bounds = bounds;
+        this.labelNames = List.of(labelNames);
+    }
+
+    /**
+     * Callers on a hot path should keep the returned histogram instead of looking it up for every observation.
+     */
+    public Histogram labels(String... labelValues) {
+        if (labelValues.length != labelNames.size()) {
+            throw new IllegalArgumentException(String.format("%s expects %d labels", name, labelNames.size()));
+        }
+
+        var key = List.of(labelValues);
+        var histogram = histograms.get(key);
+        return histogram != null ? histogram : histograms.computeIfAbsent(key, k -> new Histogram(bounds));
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        writer.header(name, "histogram", help);
+        histograms.forEach((labelValues, histogram) ->
+                writer.histogram(name, labelNames, labelValues, histogram.snapshot()));
+    }
+}
@@ -0,0 +1,48 @@
+package gunlender.infrastructure.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Heap, garbage collection and thread gauges read from the platform MXBeans at scrape time.
+ */
+public final class JvmMetrics implements Collector {
+    private static final List<String> AREA = List.of("area");
+    private static final List<String> GC = List.of("gc");
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        var heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        var nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+
+        writer.header("jvm_memory_used_bytes", "gauge", "Memory in use")
+                .sample("jvm_memory_used_bytes", AREA, List.of("heap"), heap.getUsed())
+                .sample("jvm_memory_used_bytes", AREA, List.of("nonheap"), nonHeap.getUsed());
+        writer.header("jvm_memory_committed_bytes", "gauge", "Memory committed by the operating system")
+                .sample("jvm_memory_committed_bytes", AREA, List.of("heap"), heap.getCommitted())
+                .sample("jvm_memory_committed_bytes", AREA, List.of("nonheap"), nonHeap.getCommitted());
+        writer.header("jvm_memory_max_bytes", "gauge", "Maximum heap size, -1 when unbounded")
+                .sample("jvm_memory_max_bytes", AREA, List.of("heap"), heap.getMax());
+
+        var collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+        writer.header("jvm_gc_collections_total", "counter", "Garbage collections by collector");
+        for (var gc : collectors) {
+            writer.sample("jvm_gc_collections_total", GC, List.of(gc.getName()), Math.max(0, gc.getCollectionCount()));
+        }
+        writer.header("jvm_gc_collection_seconds_total", "counter", "Time spent in garbage collection by collector");
+        for (var gc : collectors) {
+            writer.sample("jvm_gc_collection_seconds_total", GC, List.of(gc.getName()),
+                    Math.max(0, gc.getCollectionTime()) / 1000.0);
+        }
+
+        var threads = ManagementFactory.getThreadMXBean();
+
+        writer.header("jvm_threads_live", "gauge", "Live platform threads").sample("jvm_threads_live",
+                threads.getThreadCount());
+        writer.header("jvm_threads_daemon", "gauge", "Live daemon threads").sample("jvm_threads_daemon",
+                threads.getDaemonThreadCount());
+        writer.header("jvm_threads_peak", "gauge", "Most live threads since start").sample("jvm_threads_peak",
+                threads.getPeakThreadCount());
+    }
+}
@@ -0,0 +1,24 @@
+package gunlender.infrastructure.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collectors written out on every scrape, in the order they were registered.
+ */
+public final class MetricsRegistry {
+    private final List<Collector> collectors = new CopyOnWriteArrayList<>();
+
+    public <T extends Collector> T register(T collector) {
+        collectors.add(collector);
+        return collector;
+    }
+
+    public String scrape() {
+        var writer = new PrometheusWriter();
+        for (var collector : collectors) {
+            collector.collect(writer);
+        }
+        return writer.toString();
+    }
+}
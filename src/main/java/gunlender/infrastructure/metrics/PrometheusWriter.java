@@ -0,0 +1,87 @@
+package gunlender.infrastructure.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a scrape response in the Prometheus text exposition format, version 0.0.4.
+ */
+public final class PrometheusWriter {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final StringBuilder out = new StringBuilder(16 * 1024);
+
+    public PrometheusWriter header(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n"))
+                .append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, double value) {
+        return sample(name, List.of(), List.of(), value);
+    }
+
+    public PrometheusWriter sample(String name, List<String> labelNames, List<String> labelValues, double value) {
+        out.append(name);
+
+        if (!labelNames.isEmpty()) {
+            out.append('{');
+            for (int i = 0; i < labelNames.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(labelNames.get(i)).append("=\"");
+                escape(labelValues.get(i));
+                out.append('"');
+            }
+            out.append('}');
+        }
+
+        out.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+        return this;
+    }
+
+    /**
+     * Writes the buckets, sum and count of one histogram.
+     */
+    public PrometheusWriter histogram(String name, List<String> labelNames, List<String> labelValues,
+                                      Histogram.Snapshot snapshot) {
+        var bucketLabels = new ArrayList<>(labelNames);
+        bucketLabels.add("le");
+        var bounds = snapshot.bounds();
+        var counts = snapshot.cumulativeCounts();
+
+        for (int i = 0; i < counts.length; i++) {
+            var values = new ArrayList<>(labelValues);
+            values.add(i < bounds.length ? Double.toString(bounds[i]) : "+Inf");
+            sample(name + "_bucket", bucketLabels, values, counts[i]);
+        }
+
+        sample(name + "_sum", labelNames, labelValues, snapshot.sumSeconds());
+        return sample(name + "_count", labelNames, labelValues, snapshot.count());
+    }
+
+    private void escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package gunlender.server;
+
+import gunlender.infrastructure.metrics.Collector;
+import gunlender.infrastructure.metrics.CounterFamily;
+import gunlender.infrastructure.metrics.HistogramFamily;
+import gunlender.infrastructure.metrics.PrometheusWriter;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Request counts by status and latency histograms for every route, labelled with the route pattern rather than
+ * the concrete path so ids do not create a series each. Requests no registered route matched share one
+ * {@code unmatched} label, so scanners probing random paths cannot grow the label set either.
+ */
+public final class RequestMetrics implements Collector {
+    private static final String UNMATCHED = "unmatched";
+
+    private final CounterFamily requests = new CounterFamily("http_requests_total",
+            "Completed requests by route and status", "method", "route", "status");
+    private final HistogramFamily durations = new HistogramFamily("http_request_duration_seconds",
+            "Time from receiving a request until its response was complete", "method", "route");
+    private final Set<String> routes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Learns the app's routes as they are added, call it before registering them.
+     */
+    public void track(Javalin app) {
+        app.events(events -> events.handlerAdded(handler -> {
+            if (handler.getHttpMethod().isHttpMethod()) {
+                routes.add(withoutLeadingSlash(handler.getPath()));
+            }
+        }));
+    }
+
+    /**
+     * Meant for Javalin's request logger, which runs once per request after asynchronous handlers have finished.
+     */
+    public void record(Context ctx, float executionTimeMs) {
+        var method = ctx.method().name();
+        var route = route(ctx);
+
+        requests.labels(method, route, Integer.toString(ctx.statusCode())).increment();
+        durations.labels(method, route).observeNanos((long) (executionTimeMs * 1_000_000));
+    }
+
+    /**
+     * When no endpoint matched, Javalin either refuses to hand out the path, while still in the before handlers,
+     * or reports a placeholder text once after handlers ran. Only paths of registered routes become labels.
+     */
+    private String route(Context ctx) {
+        if (ctx.handlerType() == HandlerType.BEFORE) {
+            return UNMATCHED;
+        }
+
+        var path = ctx.endpointHandlerPath();
+        return routes.contains(withoutLeadingSlash(path)) ? path : UNMATCHED;
+    }
+
+    // Added handlers are reported with the leading slash, matched requests with the path as registered
+    private static String withoutLeadingSlash(String path) {
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        requests.collect(writer);
+        durations.collect(writer);
+    }
+}
@@ -0,0 +1,25 @@
+package gunlender.server;
+
+import java.util.Locale;
+
+/**
+ * Which threads Jetty runs requests on.
+ */
+public enum ThreadMode {
+    /**
+     * Jetty's own bounded pool of platform threads.
+     */
+    PLATFORM,
+    /**
+     * A new virtual thread for every task, see {@link VirtualThreadPool}.
+     */
+    VIRTUAL;
+
+    /**
+     * Reads GUNLENDER_THREADS, {@code platform} when unset.
+     */
+    public static ThreadMode fromEnvironment() {
+        var value = System.getenv("GUNLENDER_THREADS");
+        return value == null || value.isBlank() ? PLATFORM : valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,80 @@
+package gunlender.server;
+
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Jetty thread pool that starts a virtual thread for every task instead of keeping a fixed set of workers, so a
+ * request blocked on the database or on password hashing does not hold a thread other requests could use.
+ * <p>
+ * There is no upper bound on threads, whatever the handlers call into has to limit itself, see
+ * {@link gunlender.infrastructure.database.ConcurrencyLimiter}.
+ */
+public class VirtualThreadPool implements ThreadPool {
+    private final ExecutorService executor;
+    private final AtomicInteger running = new AtomicInteger();
+
+    private VirtualThreadPool(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Virtual threads are looked up reflectively, the project still compiles for Java 17. Empty when the running
+     * JVM does not have them.
+     */
+    public static Optional<VirtualThreadPool> create() {
+        try {
+            var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return Optional.of(new VirtualThreadPool((ExecutorService) factory.invoke(null)));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        running.incrementAndGet();
+
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            running.decrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int getThreads() {
+        return running.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -1,6 +1,8 @@
 package gunlender.server.routes;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import gunlender.application.dto.AmmoDto;
+import gunlender.application.dto.AmmoFilter;
 import gunlender.domain.entities.Ammo;
 import gunlender.domain.exceptions.RepositoryException;
 import gunlender.domain.services.AuthManager;
@@ -8,15 +10,21 @@ import gunlender.infrastructure.database.AmmoRepository;
 import io.javalin.apibuilder.CrudHandler;
 import io.javalin.http.Context;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.Optional;
 import java.util.UUID;
 
 public class AmmoController implements CrudHandler {
+    private final Logger logger = LoggerFactory.getLogger(AmmoController.class);
     private final AmmoRepository ammoRepository;
+    private final CatalogSnapshot<Ammo> catalog;
 
-    public AmmoController(AmmoRepository ammoRepository) {
+    public AmmoController(AmmoRepository ammoRepository, ObjectMapper objectMapper) {
         this.ammoRepository = ammoRepository;
+        this.catalog = new CatalogSnapshot<>(objectMapper, ammoRepository::streamAmmo, ammoRepository::getVersion);
     }
 
     @Override
@@ -38,8 +46,7 @@ public class AmmoController implements CrudHandler {
             );
             context.status(200);
         } catch (RepositoryException e) {
-            context.status(500);
-            throw new RuntimeException(e);
+            DatabaseFailure.respond(context, logger, "Cannot create ammo", e);
         }
     }
 
@@ -53,19 +60,38 @@ public class AmmoController implements CrudHandler {
         try {
             context.status(ammoRepository.removeAmmo(UUID.fromString(s)) == 0 ? 404 : 200);
         } catch (RepositoryException e) {
-            context.status(500);
-            throw new RuntimeException(e);
+            DatabaseFailure.respond(context, logger, "Cannot delete ammo", e);
         }
     }
 
     @Override
     public void getAll(@NotNull Context context) {
+        if (PageParameters.isPaged(context, "caliber", "available", "minPrice", "maxPrice")) {
+            getPage(context);
+            return;
+        }
+
         try {
-            context.json(ammoRepository.getAmmo());
-            context.status(200);
+            catalog.write(context);
+        } catch (RepositoryException | IOException e) {
+            DatabaseFailure.respond(context, logger, "Cannot get ammo", e);
+        }
+    }
+
+    private void getPage(Context context) {
+        var filter = new AmmoFilter();
+
+        try {
+            filter.setCaliber(context.queryParam("caliber"));
+            filter.setAvailable(PageParameters.booleanParam(context, "available"));
+            filter.setMinPrice(PageParameters.doubleParam(context, "minPrice"));
+            filter.setMaxPrice(PageParameters.doubleParam(context, "maxPrice"));
+
+            PageParameters.write(context, ammoRepository.getAmmo(filter, PageParameters.pageRequest(context)));
+        } catch (IllegalArgumentException e) {
+            context.status(400).result(e.getMessage());
         } catch (RepositoryException e) {
-            context.status(500);
-            throw new RuntimeException(e);
+            DatabaseFailure.respond(context, logger, "Cannot get page of ammo", e);
         }
     }
 
@@ -80,8 +106,7 @@ public class AmmoController implements CrudHandler {
                 context.status(404);
             }
         } catch (RepositoryException e) {
-            context.status(500);
-            throw new RuntimeException(e);
+            DatabaseFailure.respond(context, logger, "Cannot get ammo", e);
         }
     }
 
@@ -104,8 +129,7 @@ public class AmmoController implements CrudHandler {
             );
             context.status(200);
         } catch (RepositoryException e) {
-            context.status(500);
-            throw new RuntimeException(e);
+            DatabaseFailure.respond(context, logger, "Cannot update ammo", e);
         }
     }
 }
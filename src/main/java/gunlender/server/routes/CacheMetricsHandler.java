@@ -0,0 +1,19 @@
+package gunlender.server.routes;
+
+import gunlender.infrastructure.database.CachingGunRepository;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import org.jetbrains.annotations.NotNull;
+
+public class CacheMetricsHandler implements Handler {
+    private final CachingGunRepository gunRepository;
+
+    public CacheMetricsHandler(CachingGunRepository gunRepository) {
+        this.gunRepository = gunRepository;
+    }
+
+    @Override
+    public void handle(@NotNull Context ctx) throws Exception {
+        ctx.json(gunRepository.getStats());
+    }
+}
@@ -0,0 +1,157 @@
+package gunlender.server.routes;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gunlender.domain.exceptions.RepositoryException;
+import io.javalin.http.Context;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.function.LongSupplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Whole-table JSON response rendered once per version of the table, kept as plain and gzipped bytes. Each
+ * representation has its own strong ETag, the gzipped one carries a {@code -gz} suffix, since their bytes differ.
+ * Requests repeating either ETag in {@code If-None-Match} get a 304 without a body.
+ * <p>
+ * The version is read before the rows, so a snapshot may be newer than its version but never older, and a change
+ * committed while rendering only costs one extra render.
+ */
+public class CatalogSnapshot<T> {
+    private final ObjectMapper mapper;
+    private final JsonArrayResponse.RowSource<T> source;
+    private final LongSupplier version;
+    private final Object renderLock = new Object();
+    private volatile Rendered rendered;
+
+    private record Rendered(long version, String hash, byte[] json, byte[] gzip) {
+        String etag() {
+            return '"' + hash + '"';
+        }
+
+        String gzipEtag() {
+            return '"' + hash + "-gz\"";
+        }
+    }
+
+    public CatalogSnapshot(ObjectMapper mapper, JsonArrayResponse.RowSource<T> source, LongSupplier version) {
+        this.mapper = mapper;
+        this.source = source;
+        this.version = version;
+    }
+
+    public void write(Context ctx) throws RepositoryException, IOException {
+        var snapshot = current();
+        var gzip = acceptsGzip(ctx.header("Accept-Encoding"));
+
+        ctx.header("ETag", gzip ? snapshot.gzipEtag() : snapshot.etag());
+        ctx.header("Vary", "Accept-Encoding");
+
+        // A client whose encoding preference changed, or a cache holding the other variant, still only
+        // revalidates the same rows
+        var ifNoneMatch = ctx.header("If-None-Match");
+        if (matches(ifNoneMatch, snapshot.etag()) || matches(ifNoneMatch, snapshot.gzipEtag())) {
+            ctx.status(304);
+            return;
+        }
+
+        var body = snapshot.json();
+        if (gzip) {
+            ctx.header("Content-Encoding", "gzip");
+            body = snapshot.gzip();
+        }
+
+        // Written to the servlet response directly so Javalin does not compress the body a second time
+        var response = ctx.res();
+        response.setContentType("application/json");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private Rendered current() throws RepositoryException, IOException {
+        var expected = version.getAsLong();
+        var snapshot = rendered;
+
+        if (snapshot != null && snapshot.version() == expected) {
+            return snapshot;
+        }
+
+        synchronized (renderLock) {
+            expected = version.getAsLong();
+            snapshot = rendered;
+
+            if (snapshot == null || snapshot.version() != expected) {
+                snapshot = render(expected);
+                rendered = snapshot;
+            }
+
+            return snapshot;
+        }
+    }
+
+    private Rendered render(long renderedVersion) throws RepositoryException, IOException {
+        var json = new ByteArrayOutputStream();
+        try (var generator = mapper.getFactory().createGenerator(json)) {
+            generator.writeStartArray();
+            source.forEach(generator::writeObject);
+            generator.writeEndArray();
+        }
+
+        var bytes = json.toByteArray();
+        var gzip = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (var out = new GZIPOutputStream(gzip)) {
+            out.write(bytes);
+        }
+
+        return new Rendered(renderedVersion, hash(bytes), bytes, gzip.toByteArray());
+    }
+
+    private static String hash(byte[] json) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 18));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * If-None-Match uses the weak comparison, so a {@code W/} prefix added by a proxy still matches.
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (var candidate : ifNoneMatch.split(",")) {
+            var tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (var coding : acceptEncoding.split(",")) {
+            var parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+
+        return false;
+    }
+}
@@ -2,28 +2,30 @@ package gunlender.server.routes;
 
 import gunlender.application.dto.ChangePasswordDto;
 import gunlender.domain.entities.User;
-import gunlender.domain.exceptions.CryptoException;
 import gunlender.domain.exceptions.RepositoryException;
 import gunlender.domain.services.AuthManager;
-import gunlender.domain.services.CryptoService;
+import gunlender.domain.services.PasswordHasher;
 import gunlender.infrastructure.database.UserRepository;
 import io.javalin.http.Context;
 import io.javalin.http.Handler;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.UUID;
 
 public class ChangePasswordHandler implements Handler {
-    private final CryptoService cryptoService;
+    private final Logger logger = LoggerFactory.getLogger(ChangePasswordHandler.class);
+    private final PasswordHasher passwordHasher;
     private final UserRepository userRepository;
 
-    public ChangePasswordHandler(CryptoService cryptoService, UserRepository userRepository) {
-        this.cryptoService = cryptoService;
+    public ChangePasswordHandler(PasswordHasher passwordHasher, UserRepository userRepository) {
+        this.passwordHasher = passwordHasher;
         this.userRepository = userRepository;
     }
 
     @Override
-    public void handle(@NotNull Context ctx) throws RepositoryException, CryptoException {
+    public void handle(@NotNull Context ctx) throws RepositoryException {
         var userId = UUID.fromString(ctx.pathParam("user-id"));
         var changePasswordDto = ctx.bodyAsClass(ChangePasswordDto.class);
 
@@ -31,8 +33,20 @@ public class ChangePasswordHandler implements Handler {
 
         if (user.isPresent()) {
             if (accountBelongsToLoggedUser(ctx, user.get()) || AuthManager.isLoggedUserAdmin(ctx)) {
-                var hash = cryptoService.hashPassword(changePasswordDto.getPassword());
-                userRepository.updateUserPassword(user.get().getId(), hash);
+                ctx.future(() -> passwordHasher.hashPassword(changePasswordDto.getPassword())
+                        .handle((hash, failure) -> {
+                            if (failure != null) {
+                                HashingFailure.respond(ctx, logger, failure);
+                                return null;
+                            }
+
+                            try {
+                                userRepository.updateUserPassword(userId, hash);
+                            } catch (RepositoryException ex) {
+                                DatabaseFailure.respond(ctx, logger, "Cannot change password", ex);
+                            }
+                            return null;
+                        }));
             } else {
                 ctx.status(400).result("Insufficient permissions");
             }
@@ -42,6 +56,6 @@ public class ChangePasswordHandler implements Handler {
     }
 
     private boolean accountBelongsToLoggedUser(Context ctx, User user) {
-        return user.getEmail().equals(ctx.sessionAttribute("Email"));
+        return AuthManager.getPrincipal(ctx).isUser(user.getId());
     }
 }
@@ -0,0 +1,32 @@
+package gunlender.server.routes;
+
+import io.javalin.http.Context;
+import org.slf4j.Logger;
+
+import java.sql.SQLTransientException;
+
+public final class DatabaseFailure {
+    private DatabaseFailure() {}
+
+    /**
+     * A database that gave up waiting, e.g. on the concurrency limiter, is answered with 503 so clients back off
+     * and retry, anything else is a server error.
+     */
+    public static void respond(Context ctx, Logger logger, String message, Exception failure) {
+        if (isTransient(failure)) {
+            logger.warn("{}, database busy: {}", message, failure.getMessage());
+            ctx.status(503).header("Retry-After", "1").result("Database is busy, try again later");
+        } else {
+            logger.error(message, failure);
+            ctx.status(500);
+        }
+    }
+
+    static boolean isTransient(Throwable failure) {
+        var cause = failure;
+        while (cause != null && !(cause instanceof SQLTransientException)) {
+            cause = cause.getCause();
+        }
+        return cause != null;
+    }
+}
@@ -0,0 +1,19 @@
+package gunlender.server.routes;
+
+import gunlender.infrastructure.database.Database;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import org.jetbrains.annotations.NotNull;
+
+public class DatabaseMetricsHandler implements Handler {
+    private final Database database;
+
+    public DatabaseMetricsHandler(Database database) {
+        this.database = database;
+    }
+
+    @Override
+    public void handle(@NotNull Context ctx) throws Exception {
+        ctx.json(database.getStats());
+    }
+}
@@ -1,7 +1,10 @@
 package gunlender.server.routes;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import gunlender.application.dto.GunDto;
+import gunlender.application.dto.GunFilter;
 import gunlender.domain.entities.Gun;
+import gunlender.domain.entities.Weapon;
 import gunlender.domain.exceptions.RepositoryException;
 import gunlender.domain.services.AuthManager;
 import gunlender.infrastructure.database.GunRepository;
@@ -11,15 +14,18 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.Optional;
 import java.util.UUID;
 
 public class GunController implements CrudHandler {
     private final Logger logger = LoggerFactory.getLogger(GunController.class);
     private final GunRepository gunRepository;
+    private final CatalogSnapshot<Gun> catalog;
 
-    public GunController(GunRepository gunRepository) {
+    public GunController(GunRepository gunRepository, ObjectMapper objectMapper) {
         this.gunRepository = gunRepository;
+        this.catalog = new CatalogSnapshot<>(objectMapper, gunRepository::streamGuns, gunRepository::getVersion);
     }
 
     @Override
@@ -38,8 +44,7 @@ public class GunController implements CrudHandler {
             gunRepository.addGun(gun);
             ctx.status(201);
         } catch (RepositoryException ex) {
-            logger.error("Cannot create new gun", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot create new gun", ex);
         }
     }
 
@@ -56,19 +61,39 @@ public class GunController implements CrudHandler {
             gunRepository.deleteGun(gunId);
             ctx.status(200);
         } catch (RepositoryException ex) {
-            logger.error("Cannot delete gun", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot delete gun", ex);
         }
     }
 
     @Override
     public void getAll(@NotNull Context ctx) {
+        if (PageParameters.isPaged(ctx, "type", "caliber", "available", "minPrice", "maxPrice")) {
+            getPage(ctx);
+            return;
+        }
+
+        try {
+            catalog.write(ctx);
+        } catch (RepositoryException | IOException ex) {
+            DatabaseFailure.respond(ctx, logger, "Cannot get guns", ex);
+        }
+    }
+
+    private void getPage(Context ctx) {
+        var filter = new GunFilter();
+
         try {
-            var guns = gunRepository.getGuns();
-            ctx.json(guns);
+            filter.setType(PageParameters.param(ctx, "type", Weapon::FromString));
+            filter.setCaliber(ctx.queryParam("caliber"));
+            filter.setAvailable(PageParameters.booleanParam(ctx, "available"));
+            filter.setMinPrice(PageParameters.doubleParam(ctx, "minPrice"));
+            filter.setMaxPrice(PageParameters.doubleParam(ctx, "maxPrice"));
+
+            PageParameters.write(ctx, gunRepository.getGuns(filter, PageParameters.pageRequest(ctx)));
+        } catch (IllegalArgumentException ex) {
+            ctx.status(400).result(ex.getMessage());
         } catch (RepositoryException ex) {
-            logger.error("Cannot get guns", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot get page of guns", ex);
         }
     }
 
@@ -85,8 +110,7 @@ public class GunController implements CrudHandler {
         try {
             gun = gunRepository.getGunById(gunId);
         } catch (RepositoryException ex) {
-            logger.error("Cannot get gun", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot get gun", ex);
             return;
         }
 
@@ -111,8 +135,7 @@ public class GunController implements CrudHandler {
             gunRepository.updateGun(gunId, gunDto);
             ctx.status(200);
         } catch (RepositoryException ex) {
-            logger.error("Cannot create new gun", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot create new gun", ex);
         }
     }
 }
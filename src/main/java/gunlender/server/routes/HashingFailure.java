@@ -0,0 +1,21 @@
+package gunlender.server.routes;
+
+import gunlender.domain.services.PasswordHasher;
+import io.javalin.http.Context;
+import org.slf4j.Logger;
+
+final class HashingFailure {
+    private HashingFailure() {}
+
+    /**
+     * A full hashing queue is answered with 503 so clients back off, anything else is a server error.
+     */
+    static void respond(Context ctx, Logger logger, Throwable failure) {
+        if (PasswordHasher.isRejected(failure)) {
+            ctx.status(503).header("Retry-After", "1").result("Too many password operations, try again later");
+        } else {
+            logger.error("Password operation failed", failure);
+            ctx.status(500);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package gunlender.server.routes;
+
+import gunlender.domain.services.PasswordHasher;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import org.jetbrains.annotations.NotNull;
+
+public class HashingMetricsHandler implements Handler {
+    private final PasswordHasher passwordHasher;
+
+    public HashingMetricsHandler(PasswordHasher passwordHasher) {
+        this.passwordHasher = passwordHasher;
+    }
+
+    @Override
+    public void handle(@NotNull Context ctx) throws Exception {
+        ctx.json(passwordHasher.getStats());
+    }
+}
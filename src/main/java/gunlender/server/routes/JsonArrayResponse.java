@@ -0,0 +1,51 @@
+package gunlender.server.routes;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gunlender.domain.exceptions.RepositoryException;
+import gunlender.infrastructure.database.RowConsumer;
+import io.javalin.http.Context;
+
+import java.io.IOException;
+
+/**
+ * Writes a JSON array to the response element by element as rows are read, so list endpoints use the same memory
+ * however large the table is.
+ * <p>
+ * Writing to a slow client can block for as long as the client takes to read, so sources should not hold a
+ * database connection while they hand out rows. The user and lending {@code stream*} methods read keyset pages
+ * of {@link gunlender.application.PageRequest#MAX_LIMIT} rows and release the connection before each page is
+ * written, which bounds both the memory and the time a connection and its WAL snapshot stay leased. The price is
+ * that the array is no longer one consistent snapshot: rows changed between pages may be missed or show their
+ * newer state, though none is repeated. The gun and ammo streams still use a single read, they only feed
+ * {@link CatalogSnapshot}, which renders into memory.
+ */
+public class JsonArrayResponse {
+    @FunctionalInterface
+    public interface RowSource<T> {
+        void forEach(RowConsumer<T> consumer) throws RepositoryException, IOException;
+    }
+
+    private JsonArrayResponse() {}
+
+    /**
+     * Once the first elements are flushed the status can no longer change. A failure after that point leaves the
+     * array unterminated, so clients see invalid JSON rather than a silently truncated list.
+     */
+    public static <T> void write(Context ctx, ObjectMapper mapper, RowSource<T> source)
+            throws RepositoryException, IOException {
+        ctx.contentType("application/json");
+
+        var generator = mapper.getFactory().createGenerator(ctx.outputStream());
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+
+        try {
+            generator.writeStartArray();
+            source.forEach(generator::writeObject);
+            generator.writeEndArray();
+        } finally {
+            generator.close();
+        }
+    }
+}
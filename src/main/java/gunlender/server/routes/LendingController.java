@@ -1,48 +1,59 @@
 package gunlender.server.routes;
 
-import gunlender.application.dto.GunDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gunlender.application.PageRequest;
 import gunlender.application.dto.LendingDto;
+import gunlender.application.dto.LendingFilter;
 import gunlender.application.dto.UpdateLendingDto;
 import gunlender.domain.entities.Ammo;
 import gunlender.domain.entities.Gun;
 import gunlender.domain.entities.Lending;
+import gunlender.domain.exceptions.DuplicateLendingException;
+import gunlender.domain.exceptions.OutOfStockException;
 import gunlender.domain.exceptions.RepositoryException;
 import gunlender.domain.services.AuthManager;
 import gunlender.infrastructure.database.AmmoRepository;
+import gunlender.infrastructure.database.Database;
 import gunlender.infrastructure.database.GunRepository;
 import gunlender.infrastructure.database.LendingRepository;
-import gunlender.infrastructure.database.UserRepository;
 import io.javalin.apibuilder.CrudHandler;
 import io.javalin.http.Context;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.sql.Connection;
+import java.io.IOException;
 import java.sql.SQLException;
-import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 
 public class LendingController implements CrudHandler {
     private final Logger logger = LoggerFactory.getLogger(LendingController.class);
+    private final Database database;
     private final LendingRepository lendingRepository;
     private final GunRepository gunRepository;
     private final AmmoRepository ammoRepository;
-    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
 
-    public LendingController(LendingRepository lendingRepository, GunRepository gunRepository,
-                             AmmoRepository ammoRepository, UserRepository userRepository) {
+    public LendingController(Database database, LendingRepository lendingRepository, GunRepository gunRepository,
+                             AmmoRepository ammoRepository, ObjectMapper objectMapper) {
+        this.database = database;
         this.lendingRepository = lendingRepository;
         this.gunRepository = gunRepository;
         this.ammoRepository = ammoRepository;
-        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
     }
 
     @Override
     public void create(@NotNull Context ctx) {
         var lendingDto = ctx.bodyAsClass(LendingDto.class);
+
+        if (lendingDto.getAmmoAmount() < 0) {
+            ctx.status(400).result("Ammo amount cannot be negative");
+            return;
+        }
+
         Optional<Gun> gunOpt = getGun(lendingDto.getGunId(), ctx);
         Optional<Ammo> ammoOpt = getAmmo(lendingDto.getAmmoId(), ctx);
 
@@ -55,19 +66,9 @@ public class LendingController implements CrudHandler {
         }
 
         var gun = gunOpt.get();
-
-        if (gun.getAmount() <= 0) {
-            logger.error("Cannot lend gun because requested gun is not available");
-            ctx.status(400);
-            return;
-        }
-
         var ammo = ammoOpt.get();
         var price = gun.getPrice() + ammo.getPrice() * lendingDto.getAmmoAmount();
 
-        var newGun = GunDto.fromEntity(gun);
-        newGun.setAmount(newGun.getAmount() - 1);
-
         var lending = new Lending(lendingDto.getUserId(),
                 lendingDto.getGunId(),
                 lendingDto.getAmmoId(),
@@ -76,25 +77,22 @@ public class LendingController implements CrudHandler {
                 price
         );
 
-        Connection conn = null;
-
         try {
-            conn = lendingRepository.getConnection();
-            conn.setAutoCommit(false);
-            gunRepository.updateGun(gun.getId(), newGun, conn);
-            lendingRepository.addLending(lending, conn);
-            conn.commit();
+            // Stock is checked by the reservations themselves, a failed one rolls back the whole lending
+            database.writeGrouped(conn -> {
+                gunRepository.reserveGun(gun.getId(), conn);
+                ammoRepository.reserveAmmo(ammo.getId(), lending.getAmmoAmount(), conn);
+                lendingRepository.addLending(lending, conn);
+                return null;
+            });
             ctx.status(201);
+        } catch (DuplicateLendingException ex) {
+            ctx.status(409).result(ex.getMessage());
+        } catch (OutOfStockException ex) {
+            logger.info("Cannot lend gun: {}", ex.getMessage());
+            ctx.status(400).result(ex.getMessage());
         } catch (RepositoryException | SQLException ex) {
-            if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException ex2) {
-                    logger.error("Cannot rollback transaction", ex2);
-                }
-            }
-            logger.error("Cannot lend gun", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot lend gun", ex);
         }
     }
 
@@ -109,89 +107,90 @@ public class LendingController implements CrudHandler {
         try {
             lendingToDelete = lendingRepository.getLending(userId, gunId, ammoId);
         } catch (RepositoryException ex) {
-            logger.error("Cannot delete lending", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot delete lending", ex);
             return;
         }
 
-        Connection conn = null;
-
-        try {
-            conn = lendingRepository.getConnection();
-            conn.setAutoCommit(false);
-
-            if (lendingToDelete.isEmpty()) {
-                ctx.status(404);
-                return;
-            }
-
-            var lending = lendingToDelete.get();
-            var cannotDelete = !(lendingBelongsToLoggedUser(ctx, lending) || AuthManager.isLoggedUserAdmin(ctx));
+        if (lendingToDelete.isEmpty()) {
+            ctx.status(404);
+            return;
+        }
 
-            if (cannotDelete) {
-                ctx.status(401).result("Insufficient permissions");
-                return;
-            }
+        var lending = lendingToDelete.get();
 
-            lendingRepository.deleteLending(lending.getUserId(),
-                    lending.getGunId(),
-                    lending.getAmmoId(),
-                    conn);
+        if (!(lendingBelongsToLoggedUser(ctx, lending) || AuthManager.isLoggedUserAdmin(ctx))) {
+            ctx.status(401).result("Insufficient permissions");
+            return;
+        }
 
-            Optional<Gun> gunOpt = getGun(gunId, ctx);
+        try {
+            // Read again inside the write, so a lending returned twice at once only gives its stock back once
+            var deleted = database.writeGrouped(conn -> {
+                var current = lendingRepository.getLending(userId, gunId, ammoId, conn);
 
-            if (gunOpt.isPresent()) {
-                var gun = gunOpt.get();
-                var newGun = GunDto.fromEntity(gun);
-                newGun.setAmount(gun.getAmount() + 1);
-                gunRepository.updateGun(gun.getId(), newGun, conn);
-            }
+                if (current.isEmpty()) {
+                    return false;
+                }
 
-            conn.commit();
-            ctx.status(200);
+                lendingRepository.deleteLending(userId, gunId, ammoId, conn);
+                gunRepository.releaseGun(gunId, conn);
+                ammoRepository.releaseAmmo(ammoId, current.get().getAmmoAmount(), conn);
+                return true;
+            });
+            ctx.status(deleted ? 200 : 404);
         } catch (RepositoryException | SQLException ex) {
-            if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException ex2) {
-                    logger.error("Cannot rollback transaction", ex2);
-                }
-            }
-            logger.error("Cannot delete lending data", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot delete lending data", ex);
         }
     }
 
     @Override
     public void getAll(@NotNull Context ctx) {
-        List<Lending> lendings;
+        if (PageParameters.isPaged(ctx, "from", "to")) {
+            getPage(ctx);
+            return;
+        }
 
         if (AuthManager.isLoggedUserAdmin(ctx)) {
             try {
-                lendings = lendingRepository.getLendings();
-            } catch (RepositoryException ex) {
-                logger.error("Cannot get all lendings for administrator", ex);
-                ctx.status(500);
-                return;
+                JsonArrayResponse.write(ctx, objectMapper, lendingRepository::streamLendings);
+            } catch (RepositoryException | IOException ex) {
+                DatabaseFailure.respond(ctx, logger, "Cannot get all lendings for administrator", ex);
             }
         } else {
             try {
-                var loggedUser = userRepository.getUserByEmail(ctx.sessionAttribute("Email"));
+                var userId = AuthManager.getPrincipal(ctx).id();
+                JsonArrayResponse.<Lending>write(ctx, objectMapper,
+                        consumer -> lendingRepository.streamLendingsByUserId(userId, consumer));
+            } catch (RepositoryException | IOException ex) {
+                DatabaseFailure.respond(ctx, logger, "Cannot get all lendings for user", ex);
+            }
+        }
+    }
 
-                if (loggedUser.isEmpty()) {
-                    ctx.status(401);
-                    return;
-                }
+    private void getPage(Context ctx) {
+        var filter = new LendingFilter();
+        PageRequest pageRequest;
 
-                lendings = lendingRepository.getLendingByUserId(loggedUser.get().getId());
-            } catch (RepositoryException ex) {
-                logger.error("Cannot get all lendings for user", ex);
-                ctx.status(500);
-                return;
-            }
+        try {
+            filter.setReservedFrom(PageParameters.instantParam(ctx, "from"));
+            filter.setReservedTo(PageParameters.instantParam(ctx, "to"));
+            pageRequest = PageParameters.pageRequest(ctx);
+        } catch (IllegalArgumentException ex) {
+            ctx.status(400).result(ex.getMessage());
+            return;
         }
 
-        ctx.json(lendings);
+        try {
+            if (!AuthManager.isLoggedUserAdmin(ctx)) {
+                filter.setUserId(AuthManager.getPrincipal(ctx).id());
+            }
+
+            PageParameters.write(ctx, lendingRepository.getLendings(filter, pageRequest));
+        } catch (IllegalArgumentException ex) {
+            ctx.status(400).result(ex.getMessage());
+        } catch (RepositoryException ex) {
+            DatabaseFailure.respond(ctx, logger, "Cannot get page of lendings", ex);
+        }
     }
     @Override
     public void getOne(@NotNull Context ctx, @NotNull String s) {
@@ -204,8 +203,7 @@ public class LendingController implements CrudHandler {
         try {
             lendingOpt = lendingRepository.getLending(userId, gunId, ammoId);
         } catch (RepositoryException ex) {
-            logger.error("Cannot get lending from database", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot get lending from database", ex);
             return;
         }
 
@@ -224,8 +222,12 @@ public class LendingController implements CrudHandler {
 
         var lendingDto = ctx.bodyAsClass(LendingDto.class);
 
-        var lendingOpt = getLending(lendingDto.getUserId(), lendingDto.getGunId(),
-                lendingDto.getAmmoId(), ctx);
+        if (lendingDto.getAmmoAmount() < 0) {
+            ctx.status(400).result("Ammo amount cannot be negative");
+            return;
+        }
+
+        var lendingOpt = getLending(lendingDto.getUserId(), gunId, ammoId, ctx);
 
         if (lendingOpt.isEmpty()) {
             return;
@@ -233,17 +235,10 @@ public class LendingController implements CrudHandler {
 
         var lending = lendingOpt.get();
 
-        try {
-            if (lendingBelongsToLoggedUser(ctx, lending) || AuthManager.isLoggedUserAdmin(ctx)) {
-                var updateLendingDto = new UpdateLendingDto(lendingDto, gunId, ammoId);
-                updateLending(updateLendingDto, ctx);
-            }
-        } catch (RepositoryException ex) {
-            logger.error("Cannot update lending data in database", ex);
-            ctx.status(500);
+        if (lendingBelongsToLoggedUser(ctx, lending) || AuthManager.isLoggedUserAdmin(ctx)) {
+            var updateLendingDto = new UpdateLendingDto(lendingDto, gunId, ammoId);
+            updateLending(updateLendingDto, ctx);
         }
-
-
     }
 
     private void updateLending(UpdateLendingDto updateLendingDto, Context ctx) {
@@ -253,62 +248,45 @@ public class LendingController implements CrudHandler {
             return;
         }
 
-        var oldGunOpt = getGun(updateLendingDto.getOldGunId(), ctx);
-
-        if (oldGunOpt.isEmpty()) {
-            return;
-        }
-
         var newAmmoOpt = getAmmo(updateLendingDto.getNewAmmoId(), ctx);
 
         if (newAmmoOpt.isEmpty()) {
             return;
         }
 
-        var oldGun = oldGunOpt.get();
         var newGun = newGunOpt.get();
-
-        if (newGun.getAmount() <= 0) {
-            logger.error("Cannot lend gun because requested gun is not available");
-            ctx.status(400).result("Requested gun is not available");
-            return;
-        }
-
         var newAmmo = newAmmoOpt.get();
         var newPrice = newGun.getPrice() + newAmmo.getPrice() * updateLendingDto.getAmmoAmount();
 
-        Connection conn = null;
-
         try {
-            conn = lendingRepository.getConnection();
-            conn.setAutoCommit(false);
-
-            if (updateLendingDto.getNewGunId() != updateLendingDto.getOldGunId()) {
-                // Increase old gun amount
-                var oldGunDto = GunDto.fromEntity(oldGun);
-                oldGunDto.setAmount(oldGunDto.getAmount() + 1);
-                gunRepository.updateGun(oldGun.getId(), oldGunDto, conn);
-
-                // Decrease new gun amount
-                var newGunDto = GunDto.fromEntity(newGun);
-                newGunDto.setAmount(newGunDto.getAmount() - 1);
-                gunRepository.updateGun(newGun.getId(), newGunDto, conn);
-            }
+            var updated = database.writeGrouped(conn -> {
+                var current = lendingRepository.getLending(updateLendingDto.getUserId(),
+                        updateLendingDto.getOldGunId(), updateLendingDto.getOldAmmoId(), conn);
 
-            lendingRepository.updateLending(updateLendingDto, newPrice, conn);
+                if (current.isEmpty()) {
+                    return false;
+                }
 
-            conn.commit();
-            ctx.status(201);
-        } catch (RepositoryException | SQLException ex) {
-            if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException ex2) {
-                    logger.error("Cannot rollback transaction", ex2);
+                if (!updateLendingDto.getNewGunId().equals(updateLendingDto.getOldGunId())) {
+                    gunRepository.reserveGun(newGun.getId(), conn);
+                    gunRepository.releaseGun(updateLendingDto.getOldGunId(), conn);
                 }
-            }
-            logger.error("Cannot lend gun", ex);
-            ctx.status(500);
+
+                // Released first, so rounds the lending already holds count towards the new amount
+                ammoRepository.releaseAmmo(updateLendingDto.getOldAmmoId(), current.get().getAmmoAmount(), conn);
+                ammoRepository.reserveAmmo(newAmmo.getId(), updateLendingDto.getAmmoAmount(), conn);
+
+                lendingRepository.updateLending(updateLendingDto, newPrice, conn);
+                return true;
+            });
+            ctx.status(updated ? 201 : 404);
+        } catch (DuplicateLendingException ex) {
+            ctx.status(409).result(ex.getMessage());
+        } catch (OutOfStockException ex) {
+            logger.info("Cannot move lending: {}", ex.getMessage());
+            ctx.status(400).result(ex.getMessage());
+        } catch (RepositoryException | SQLException ex) {
+            DatabaseFailure.respond(ctx, logger, "Cannot lend gun", ex);
         }
     }
 
@@ -320,8 +298,7 @@ public class LendingController implements CrudHandler {
             }
             return lending;
         } catch (RepositoryException ex) {
-            logger.error("Cannot update lending data", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot update lending data", ex);
             return Optional.empty();
         }
     }
@@ -334,8 +311,7 @@ public class LendingController implements CrudHandler {
             }
             return gun;
         } catch (RepositoryException ex) {
-            logger.error("Cannot get gun for lending", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot get gun for lending", ex);
             return Optional.empty();
         }
     }
@@ -348,14 +324,12 @@ public class LendingController implements CrudHandler {
             }
             return ammo;
         } catch (RepositoryException ex) {
-            logger.error("Cannot get ammo for lending", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot get ammo for lending", ex);
             return Optional.empty();
         }
     }
 
-    private boolean lendingBelongsToLoggedUser(Context ctx, Lending lending) throws RepositoryException {
-        var user = userRepository.getUserByEmail(ctx.sessionAttribute("Email"));
-        return user.map(value -> value.getId().equals(lending.getUserId())).orElse(false);
+    private boolean lendingBelongsToLoggedUser(Context ctx, Lending lending) {
+        return AuthManager.getPrincipal(ctx).isUser(lending.getUserId());
     }
 }
@@ -3,26 +3,31 @@ package gunlender.server.routes;
 import gunlender.application.dto.LoginDto;
 import gunlender.domain.exceptions.CryptoException;
 import gunlender.domain.exceptions.RepositoryException;
-import gunlender.domain.services.CryptoService;
 import gunlender.domain.services.JwtService;
+import gunlender.domain.services.PasswordHasher;
 import gunlender.infrastructure.database.UserRepository;
 import io.javalin.http.Context;
 import io.javalin.http.Handler;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.UUID;
 
 public class LoginHandler implements Handler {
+    private final Logger logger = LoggerFactory.getLogger(LoginHandler.class);
     private final UserRepository userRepository;
-    private final CryptoService cryptoService;
+    private final PasswordHasher passwordHasher;
     private final JwtService jwtService;
 
-    public LoginHandler(UserRepository userRepository, CryptoService cryptoService, JwtService jwtService) {
+    public LoginHandler(UserRepository userRepository, PasswordHasher passwordHasher, JwtService jwtService) {
         this.userRepository = userRepository;
-        this.cryptoService = cryptoService;
+        this.passwordHasher = passwordHasher;
         this.jwtService = jwtService;
     }
 
     @Override
-    public void handle(@NotNull Context ctx) throws RepositoryException, CryptoException {
+    public void handle(@NotNull Context ctx) throws RepositoryException {
         var loginDto = ctx.bodyAsClass(LoginDto.class);
         var user = userRepository.getUserByEmail(loginDto.getEmail());
 
@@ -33,12 +38,50 @@ public class LoginHandler implements Handler {
 
         var storedPasswordHash = user.get().getPasswordHash();
 
-        if (cryptoService.comparePasswordAndHash(loginDto.getPassword(), storedPasswordHash)) {
-            var jwt = jwtService.generateJwt(user.get().getEmail(), user.get().getAccountType().name());
-            ctx.status(200).header("Authorization", "Bearer " + jwt);
-            ctx.status(200).header("UserRole", user.get().getAccountType().name() );
-        } else {
-            ctx.status(400).result("Password or email address are invalid");
+        ctx.future(() -> passwordHasher.comparePasswordAndHash(loginDto.getPassword(), storedPasswordHash)
+                .handle((matches, failure) -> {
+                    if (failure != null) {
+                        HashingFailure.respond(ctx, logger, failure);
+                    } else if (matches) {
+                        var jwt = jwtService.generateJwt(user.get().getId(), user.get().getEmail(),
+                                user.get().getAccountType().name());
+                        ctx.status(200).header("Authorization", "Bearer " + jwt);
+                        ctx.status(200).header("UserRole", user.get().getAccountType().name() );
+                        upgradeHash(user.get().getId(), loginDto.getPassword(), storedPasswordHash);
+                    } else {
+                        ctx.status(400).result("Password or email address are invalid");
+                    }
+                    return null;
+                }));
+    }
+
+    /**
+     * Rehashes under the current policy in the background once the password is known to be right. The login
+     * response does not wait for it, and a busy hashing pool just leaves the upgrade for the next login.
+     */
+    private void upgradeHash(UUID userId, String password, String storedPasswordHash) {
+        try {
+            if (!passwordHasher.needsRehash(storedPasswordHash)) {
+                return;
+            }
+        } catch (CryptoException ex) {
+            logger.warn("Cannot read stored password hash of user {}", userId, ex);
+            return;
         }
+
+        passwordHasher.hashPassword(password).thenAccept(upgraded -> {
+            try {
+                if (userRepository.replaceUserPassword(userId, storedPasswordHash, upgraded)) {
+                    logger.info("Upgraded password hash of user {}", userId);
+                }
+            } catch (RepositoryException ex) {
+                logger.warn("Cannot store upgraded password hash of user {}", userId, ex);
+            }
+        }).exceptionally(failure -> {
+            if (!PasswordHasher.isRejected(failure)) {
+                logger.warn("Cannot upgrade password hash of user {}", userId, failure);
+            }
+            return null;
+        });
     }
 }
@@ -0,0 +1,87 @@
+package gunlender.server.routes;
+
+import gunlender.application.Page;
+import gunlender.application.PageRequest;
+import io.javalin.http.Context;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Parses the {@code cursor}, {@code limit} and filter query parameters of paginated listings. Invalid values raise
+ * {@link IllegalArgumentException} with a message fit for a 400 response.
+ */
+public class PageParameters {
+    public static final String NEXT_CURSOR_HEADER = "Next-Cursor";
+
+    private PageParameters() {}
+
+    /**
+     * Listings stay unpaginated for clients that pass neither paging nor filter parameters.
+     */
+    public static boolean isPaged(Context ctx, String... filters) {
+        if (ctx.queryParam("cursor") != null || ctx.queryParam("limit") != null) {
+            return true;
+        }
+
+        for (var filter : filters) {
+            if (ctx.queryParam(filter) != null) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public static PageRequest pageRequest(Context ctx) {
+        var limit = ctx.queryParam("limit");
+        return new PageRequest(ctx.queryParam("cursor"),
+                limit == null ? PageRequest.DEFAULT_LIMIT : parse("limit", limit, Integer::parseInt));
+    }
+
+    public static <T> void write(Context ctx, Page<T> page) {
+        if (page.nextCursor() != null) {
+            ctx.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        ctx.json(page.items());
+    }
+
+    /**
+     * Returns the parsed query parameter, or null if it is absent.
+     */
+    public static <T> T param(Context ctx, String name, Function<String, T> parser) {
+        var value = ctx.queryParam(name);
+        return value == null ? null : parse(name, value, parser);
+    }
+
+    public static Double doubleParam(Context ctx, String name) {
+        return param(ctx, name, Double::parseDouble);
+    }
+
+    public static Boolean booleanParam(Context ctx, String name) {
+        return param(ctx, name, PageParameters::parseBoolean);
+    }
+
+    public static Instant instantParam(Context ctx, String name) {
+        return param(ctx, name, Instant::parse);
+    }
+
+    private static <T> T parse(String name, String value, Function<String, T> parser) {
+        try {
+            return parser.apply(value);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            var msg = String.format("Invalid value '%s' of query parameter '%s'", value, name);
+            throw new IllegalArgumentException(msg, e);
+        }
+    }
+
+    private static boolean parseBoolean(String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "true" -> true;
+            case "false" -> false;
+            default -> throw new IllegalArgumentException();
+        };
+    }
+}
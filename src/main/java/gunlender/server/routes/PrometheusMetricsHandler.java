@@ -0,0 +1,20 @@
+package gunlender.server.routes;
+
+import gunlender.infrastructure.metrics.MetricsRegistry;
+import gunlender.infrastructure.metrics.PrometheusWriter;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import org.jetbrains.annotations.NotNull;
+
+public class PrometheusMetricsHandler implements Handler {
+    private final MetricsRegistry registry;
+
+    public PrometheusMetricsHandler(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void handle(@NotNull Context ctx) throws Exception {
+        ctx.contentType(PrometheusWriter.CONTENT_TYPE).result(registry.scrape());
+    }
+}
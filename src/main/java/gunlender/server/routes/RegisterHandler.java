@@ -2,26 +2,28 @@ package gunlender.server.routes;
 
 import gunlender.application.dto.RegisterUserDto;
 import gunlender.domain.entities.User;
-import gunlender.domain.exceptions.CryptoException;
 import gunlender.domain.exceptions.RepositoryException;
 import gunlender.domain.services.AuthManager;
-import gunlender.domain.services.CryptoService;
+import gunlender.domain.services.PasswordHasher;
 import gunlender.infrastructure.database.UserRepository;
 import io.javalin.http.Context;
 import io.javalin.http.Handler;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class RegisterHandler implements Handler {
+    private final Logger logger = LoggerFactory.getLogger(RegisterHandler.class);
     private final UserRepository userRepository;
-    private final CryptoService cryptoService;
+    private final PasswordHasher passwordHasher;
 
-    public RegisterHandler(UserRepository userRepo, CryptoService cryptoSrv) {
+    public RegisterHandler(UserRepository userRepo, PasswordHasher hasher) {
         userRepository = userRepo;
-        cryptoService = cryptoSrv;
+        passwordHasher = hasher;
     }
 
     @Override
-    public void handle(@NotNull Context ctx) throws RepositoryException, CryptoException {
+    public void handle(@NotNull Context ctx) throws RepositoryException {
         var registerDto = ctx.bodyAsClass(RegisterUserDto.class);
         var user = userRepository.getUserByEmail(registerDto.getEmail());
 
@@ -30,17 +32,27 @@ public class RegisterHandler implements Handler {
             return;
         }
 
-        var passwordHash = cryptoService.hashPassword(registerDto.getPassword());
-
-        var newUser = new User(registerDto.getFirstName(),
-                registerDto.getLastName(),
-                registerDto.getEmail(),
-                registerDto.getPhoneNumber(),
-                passwordHash,
-                AuthManager.Role.STANDARD_USER);
-
-        userRepository.addUser(newUser);
-
-        ctx.status(201);
+        ctx.future(() -> passwordHasher.hashPassword(registerDto.getPassword())
+                .handle((passwordHash, failure) -> {
+                    if (failure != null) {
+                        HashingFailure.respond(ctx, logger, failure);
+                        return null;
+                    }
+
+                    var newUser = new User(registerDto.getFirstName(),
+                            registerDto.getLastName(),
+                            registerDto.getEmail(),
+                            registerDto.getPhoneNumber(),
+                            passwordHash,
+                            AuthManager.Role.STANDARD_USER);
+
+                    try {
+                        userRepository.addUser(newUser);
+                        ctx.status(201);
+                    } catch (RepositoryException ex) {
+                        DatabaseFailure.respond(ctx, logger, "Cannot register user", ex);
+                    }
+                    return null;
+                }));
     }
 }
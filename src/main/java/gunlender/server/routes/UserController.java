@@ -1,5 +1,6 @@
 package gunlender.server.routes;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import gunlender.application.dto.UpdateUserDto;
 import gunlender.domain.entities.User;
 import gunlender.domain.exceptions.RepositoryException;
@@ -11,15 +12,18 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.Optional;
 import java.util.UUID;
 
 public class UserController implements CrudHandler {
     private final Logger logger = LoggerFactory.getLogger(UserController.class);
     private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
 
-    public UserController(UserRepository userRepository) {
+    public UserController(UserRepository userRepository, ObjectMapper objectMapper) {
         this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
     }
 
     @Override
@@ -34,8 +38,7 @@ public class UserController implements CrudHandler {
         try {
             userToDelete = userRepository.getUserById(UUID.fromString((s)));
         } catch (RepositoryException ex) {
-            logger.error("Cannot delete user", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot delete user", ex);
             return;
         }
 
@@ -59,12 +62,21 @@ public class UserController implements CrudHandler {
             return;
         }
 
+        if (PageParameters.isPaged(ctx)) {
+            try {
+                PageParameters.write(ctx, userRepository.getUsers(PageParameters.pageRequest(ctx)));
+            } catch (IllegalArgumentException ex) {
+                ctx.status(400).result(ex.getMessage());
+            } catch (RepositoryException ex) {
+                DatabaseFailure.respond(ctx, logger, "Cannot fetch page of users", ex);
+            }
+            return;
+        }
+
         try {
-            var users = userRepository.getUsers();
-            ctx.json(users);
-        } catch (RepositoryException ex) {
-            logger.error("Cannot fetch all users", ex);
-            ctx.status(500);
+            JsonArrayResponse.write(ctx, objectMapper, userRepository::streamUsers);
+        } catch (RepositoryException | IOException ex) {
+            DatabaseFailure.respond(ctx, logger, "Cannot fetch all users", ex);
         }
     }
 
@@ -75,8 +87,7 @@ public class UserController implements CrudHandler {
         try {
             user = userRepository.getUserById(UUID.fromString((s)));
         } catch (RepositoryException ex) {
-            logger.error("Cannot delete user", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot delete user", ex);
             return;
         }
 
@@ -96,8 +107,7 @@ public class UserController implements CrudHandler {
         try {
             userToUpdate = userRepository.getUserById(UUID.fromString((s)));
         } catch (RepositoryException ex) {
-            logger.error("Cannot delete user", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot delete user", ex);
             return;
         }
 
@@ -107,8 +117,7 @@ public class UserController implements CrudHandler {
                 try {
                     userRepository.updateUser(user.getId(), updateUserDto);
                 } catch (RepositoryException ex) {
-                    logger.error("Cannot update user", ex);
-                    ctx.status(500);
+                    DatabaseFailure.respond(ctx, logger, "Cannot update user", ex);
                 }
             } else {
                 ctx.status(400).result("Insufficient permissions");
@@ -118,15 +127,14 @@ public class UserController implements CrudHandler {
     }
 
     private boolean accountBelongsToLoggedUser(Context ctx, User user) {
-        return user.getEmail().equals(ctx.sessionAttribute("Email"));
+        return AuthManager.getPrincipal(ctx).isUser(user.getId());
     }
 
     private void deleteUser(Context ctx, User user) {
         try {
             userRepository.deleteUser(user.getId());
         } catch (RepositoryException ex) {
-            logger.error("Cannot delete user", ex);
-            ctx.status(500);
+            DatabaseFailure.respond(ctx, logger, "Cannot delete user", ex);
         }
     }
 
@@ -1,12 +1,14 @@
 package gunlender.server.routes;
 
 import gunlender.domain.entities.User;
+import gunlender.domain.services.AuthManager;
 import gunlender.infrastructure.database.UserRepository;
 import io.javalin.http.Context;
 import io.javalin.http.Handler;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Optional;
+import java.util.UUID;
 
 public class UserInfoHandler implements Handler {
 
@@ -18,9 +20,9 @@ public class UserInfoHandler implements Handler {
 
     @Override
     public void handle(@NotNull Context ctx) throws Exception {
-        final String email = ctx.sessionAttribute("Email");
-        if (email != null) {
-            final Optional<User> user = userRepository.getUserByEmail(email);
+        final UUID userId = AuthManager.getPrincipal(ctx).id();
+        if (userId != null) {
+            final Optional<User> user = userRepository.getUserById(userId);
             user.ifPresent(ctx::json);
             ctx.status(201);
         } else {
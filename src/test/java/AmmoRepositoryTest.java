@@ -1,12 +1,18 @@
 import gunlender.domain.entities.Ammo;
+import gunlender.domain.exceptions.OutOfStockException;
 import gunlender.infrastructure.database.AmmoRepository;
 import gunlender.infrastructure.database.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Slf4j
  class AmmoRepositoryTest extends BaseRepositoryTest {
@@ -64,6 +70,103 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
         });
     }
 
+    @Test
+    void versionAdvancesOnEveryWrite() throws Exception {
+        var ammoRepo = getRepository();
+        var ammo = new Ammo(caliber(), amount(), price(), picture());
+
+        var initial = ammoRepo.getVersion();
+        ammoRepo.addAmmo(ammo);
+        ammoRepo.updateAmmo(ammo);
+        ammoRepo.removeAmmo(ammo.getId());
+
+        assertEquals(initial + 3, ammoRepo.getVersion());
+    }
+
+    @Test
+    void concurrentReservationsAndReturnsKeepStockConsistent() throws Exception {
+        var ammoRepo = getRepository();
+        var database = databases.get(databases.size() - 1);
+        var ammo = new Ammo(caliber(), 1000, price(), picture());
+        ammoRepo.addAmmo(ammo);
+
+        var executor = Executors.newFixedThreadPool(64);
+        var held = new AtomicInteger();
+        var outOfStock = new AtomicInteger();
+        var results = new ArrayList<Future<?>>();
+
+        for (int i = 0; i < 400; i++) {
+            var rounds = 1 + i % 10;
+            var giveBack = i % 2 == 0;
+
+            results.add(executor.submit(() -> {
+                try {
+                    database.writeGrouped(connection -> {
+                        ammoRepo.reserveAmmo(ammo.getId(), rounds, connection);
+                        return null;
+                    });
+                } catch (OutOfStockException ex) {
+                    outOfStock.incrementAndGet();
+                    return null;
+                }
+
+                if (giveBack) {
+                    database.writeGrouped(connection -> ammoRepo.releaseAmmo(ammo.getId(), rounds, connection));
+                } else {
+                    held.addAndGet(rounds);
+                }
+                return null;
+            }));
+        }
+
+        for (var result : results) {
+            result.get();
+        }
+        executor.shutdown();
+
+        var left = ammoRepo.getAmmoById(ammo.getId()).orElseThrow().getAmount();
+        assertTrue(left >= 0);
+        assertEquals(1000 - held.get(), left);
+        // The requests that keep their rounds ask for 1200 in total, more than there are
+        assertTrue(outOfStock.get() > 0);
+    }
+
+    @Test
+    void reservingMoreAmmoThanInStockChangesNothing() throws Exception {
+        var ammoRepo = getRepository();
+        var database = databases.get(databases.size() - 1);
+        var ammo = new Ammo(caliber(), 10, price(), picture());
+        ammoRepo.addAmmo(ammo);
+
+        assertThrows(OutOfStockException.class, () -> database.write(connection -> {
+            ammoRepo.reserveAmmo(ammo.getId(), 11, connection);
+            return null;
+        }));
+        assertEquals(10, ammoRepo.getAmmoById(ammo.getId()).orElseThrow().getAmount());
+
+        database.write(connection -> {
+            ammoRepo.reserveAmmo(ammo.getId(), 10, connection);
+            return null;
+        });
+        assertEquals(0, ammoRepo.getAmmoById(ammo.getId()).orElseThrow().getAmount());
+    }
+
+    @Test
+    void columnsMatchTableAndRoundTrip() throws Exception {
+        var ammoRepo = getRepository();
+        var ammo = new Ammo(caliber(), amount(), price(), picture());
+        ammoRepo.addAmmo(ammo);
+
+        assertEquals(List.of(Ammo.COLUMNS.split(", ")), tableColumns("ammo"));
+
+        var stored = ammoRepo.getAmmoById(ammo.getId()).orElseThrow();
+        assertEquals(ammo.getId(), stored.getId());
+        assertEquals(ammo.getCaliber(), stored.getCaliber());
+        assertEquals(ammo.getAmount(), stored.getAmount());
+        assertEquals(ammo.getPrice(), stored.getPrice());
+        assertEquals(ammo.getPicture(), stored.getPicture());
+    }
+
     private String caliber() {
         return FAKER.cat().breed();
     }
@@ -77,6 +180,6 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
     }
 
     private String picture() {
-        return FAKER.regexify("https://[a-z]{5,20}.local");
+        return FAKER.regexify("https://[a-z]{5,20}\\.local");
     }
 }
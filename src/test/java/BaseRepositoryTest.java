@@ -1,5 +1,8 @@
 import com.github.javafaker.Faker;
 import gunlender.application.Repository;
+import gunlender.infrastructure.database.Database;
+import gunlender.infrastructure.database.DatabaseConfig;
+import gunlender.infrastructure.database.MigrationRunner;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.platform.commons.logging.Logger;
 import org.junit.platform.commons.logging.LoggerFactory;
@@ -13,22 +16,52 @@ import java.util.UUID;
 public abstract class BaseRepositoryTest {
     protected static final Faker FAKER = new Faker();
     protected static final List<String> databaseFiles = new ArrayList<>();
+    protected static final List<Database> databases = new ArrayList<>();
     protected static final Logger LOGGER = LoggerFactory.getLogger(UserRepositoryTest.class);
 
     protected <T extends Repository> Repository getRepository(Class<T> tClass) throws Exception {
         var fileName = "gunlender" + UUID.randomUUID() + ".db";
         var connectionString = "jdbc:sqlite:" + fileName;
 
-        var ctor = tClass.getConstructor(String.class);
-        var repo = ctor.newInstance(connectionString);
-        repo.migrate();
+        var databaseConfig = DatabaseConfig.forEnvironment("test");
+        databaseConfig.setUrl(connectionString);
+        var database = Database.open(databaseConfig);
+        databases.add(database);
+
+        var ctor = tClass.getConstructor(Database.class);
+        var repo = ctor.newInstance(database);
+        new MigrationRunner(database).migrate(repo);
 
         databaseFiles.add(fileName);
         return repo;
     }
 
+    /**
+     * Columns of a table in declaration order, from the database of the repository created last.
+     */
+    protected List<String> tableColumns(String table) throws Exception {
+        return databases.get(databases.size() - 1).read(connection -> {
+            var columns = new ArrayList<String>();
+
+            try (var statement = connection.createStatement()) {
+                var rs = statement.executeQuery(String.format("pragma table_info(%s)", table));
+
+                while (rs.next()) {
+                    columns.add(rs.getString("name"));
+                }
+            }
+
+            return columns;
+        });
+    }
+
     @AfterAll
     static void Cleanup() {
+        for (var database : databases) {
+            database.close();
+        }
+        databases.clear();
+
         var path = Paths.get(System.getProperty("user.dir"));
         for (var db : databaseFiles) {
             var file = new File(Paths.get(path.toString(), db).toString());
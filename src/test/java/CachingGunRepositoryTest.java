@@ -0,0 +1,99 @@
+import gunlender.application.dto.GunDto;
+import gunlender.domain.entities.Gun;
+import gunlender.domain.entities.Weapon;
+import gunlender.infrastructure.database.CachingGunRepository;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingGunRepositoryTest extends BaseRepositoryTest {
+    private CachingGunRepository getRepository() throws Exception {
+        return (CachingGunRepository) getRepository(CachingGunRepository.class);
+    }
+
+    private Gun newGun(int amount) {
+        return new Gun(FAKER.company().name(), FAKER.dog().name(), Weapon.WeaponType.RIFLE, FAKER.cat().name(),
+                FAKER.number().randomDouble(2, 3, 10), 900, amount, FAKER.number().randomDouble(2, 10, 1000),
+                FAKER.regexify("https://[a-z]{5,20}.local"));
+    }
+
+    @Test
+    void repeatedCatalogReadsAreServedFromCache() throws Exception {
+        var gunRepo = getRepository();
+        gunRepo.addGun(newGun(3));
+        gunRepo.addGun(newGun(4));
+
+        assertEquals(2, gunRepo.getGuns().size());
+        assertEquals(2, gunRepo.getGuns().size());
+
+        var stats = gunRepo.getStats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(2, stats.catalogSize());
+    }
+
+    @Test
+    void writesInvalidateCachedGuns() throws Exception {
+        var gunRepo = getRepository();
+        var gun = newGun(3);
+        gunRepo.addGun(gun);
+
+        assertEquals(1, gunRepo.getGuns().size());
+        assertEquals(3, gunRepo.getGunById(gun.getId()).orElseThrow().getAmount());
+
+        var dto = GunDto.fromEntity(gun);
+        dto.setAmount(7);
+        gunRepo.updateGun(gun.getId(), dto);
+
+        assertEquals(7, gunRepo.getGunById(gun.getId()).orElseThrow().getAmount());
+        assertEquals(7, gunRepo.getGuns().get(0).getAmount());
+
+        gunRepo.addGun(newGun(1));
+        assertEquals(2, gunRepo.getGuns().size());
+
+        gunRepo.deleteGun(gun.getId());
+        assertTrue(gunRepo.getGunById(gun.getId()).isEmpty());
+        assertEquals(1, gunRepo.getGuns().size());
+    }
+
+    @Test
+    void updatesInsideTransactionInvalidateAfterCommit() throws Exception {
+        var gunRepo = getRepository();
+        var database = databases.get(databases.size() - 1);
+        var gun = newGun(3);
+        gunRepo.addGun(gun);
+
+        assertEquals(3, gunRepo.getGunById(gun.getId()).orElseThrow().getAmount());
+
+        var dto = GunDto.fromEntity(gun);
+        dto.setAmount(2);
+        database.write(connection -> {
+            gunRepo.updateGun(gun.getId(), dto, connection);
+            return null;
+        });
+
+        assertEquals(2, gunRepo.getGunById(gun.getId()).orElseThrow().getAmount());
+    }
+
+    @Test
+    void reservationsInvalidateAfterCommit() throws Exception {
+        var gunRepo = getRepository();
+        var database = databases.get(databases.size() - 1);
+        var gun = newGun(3);
+        gunRepo.addGun(gun);
+
+        assertEquals(3, gunRepo.getGunById(gun.getId()).orElseThrow().getAmount());
+        var version = gunRepo.getVersion();
+
+        database.writeGrouped(connection -> {
+            gunRepo.reserveGun(gun.getId(), connection);
+            return null;
+        });
+
+        assertEquals(2, gunRepo.getGunById(gun.getId()).orElseThrow().getAmount());
+        assertTrue(gunRepo.getVersion() > version);
+
+        database.writeGrouped(connection -> gunRepo.releaseGun(gun.getId(), connection));
+        assertEquals(3, gunRepo.getGuns().get(0).getAmount());
+    }
+}
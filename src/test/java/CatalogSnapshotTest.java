@@ -0,0 +1,57 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gunlender.server.routes.CatalogSnapshot;
+import io.javalin.Javalin;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotTest {
+
+    @Test
+    void gzipVariantHasItsOwnEtagAndEitherRevalidates() throws Exception {
+        var snapshot = new CatalogSnapshot<String>(new ObjectMapper(), consumer -> {
+            for (var row : List.of("first", "second")) {
+                consumer.accept(row);
+            }
+        }, () -> 1);
+        var app = Javalin.create().get("catalog", snapshot::write).start(0);
+
+        try {
+            var http = HttpClient.newHttpClient();
+            var uri = URI.create("http://localhost:" + app.port() + "/catalog");
+
+            var plain = http.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString());
+            var gzip = http.send(HttpRequest.newBuilder(uri).header("Accept-Encoding", "gzip").GET().build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            var plainEtag = plain.headers().firstValue("ETag").orElseThrow();
+            var gzipEtag = gzip.headers().firstValue("ETag").orElseThrow();
+
+            assertEquals("[\"first\",\"second\"]", plain.body());
+            assertEquals("gzip", gzip.headers().firstValue("Content-Encoding").orElse(null));
+            assertEquals(plainEtag.substring(0, plainEtag.length() - 1) + "-gz\"", gzipEtag);
+
+            for (var etag : List.of(plainEtag, gzipEtag, "W/" + gzipEtag)) {
+                for (var encoding : List.of("identity", "gzip")) {
+                    var revalidated = http.send(HttpRequest.newBuilder(uri)
+                            .header("Accept-Encoding", encoding)
+                            .header("If-None-Match", etag)
+                            .GET().build(), HttpResponse.BodyHandlers.ofString());
+
+                    assertEquals(304, revalidated.statusCode(), etag + " " + encoding);
+                }
+            }
+
+            var stale = http.send(HttpRequest.newBuilder(uri).header("If-None-Match", "\"other\"").GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, stale.statusCode());
+        } finally {
+            app.stop();
+        }
+    }
+}
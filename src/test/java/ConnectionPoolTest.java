@@ -0,0 +1,160 @@
+import gunlender.infrastructure.database.ConnectionPool;
+import gunlender.infrastructure.database.DatabaseConfig;
+import gunlender.infrastructure.database.PoolConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+    private static final String FILE_NAME = "gunlender" + UUID.randomUUID() + ".db";
+
+    private ConnectionPool getPool(int size) {
+        var config = new PoolConfig();
+        config.setMaximumPoolSize(size);
+        config.setAcquireTimeoutMillis(100);
+        return new ConnectionPool("jdbc:sqlite:" + FILE_NAME, config);
+    }
+
+    @Test
+    void closedConnectionIsReturnedToPool() throws Exception {
+        try (var pool = getPool(1)) {
+            try (var connection = pool.getConnection()) {
+                assertEquals(1, pool.getStats().active());
+                assertFalse(connection.isClosed());
+            }
+
+            var stats = pool.getStats();
+            assertEquals(0, stats.active());
+            assertEquals(1, stats.idle());
+            assertEquals(1, stats.total());
+        }
+    }
+
+    @Test
+    void physicalConnectionIsReused() throws Exception {
+        try (var pool = getPool(2)) {
+            for (int i = 0; i < 10; i++) {
+                try (var connection = pool.getConnection()) {
+                    assertTrue(connection.isValid(1));
+                }
+            }
+
+            assertEquals(1, pool.getStats().total());
+            assertEquals(10, pool.getStats().acquired());
+        }
+    }
+
+    @Test
+    void acquiringFromExhaustedPoolTimesOut() throws Exception {
+        try (var pool = getPool(1)) {
+            try (var ignored = pool.getConnection()) {
+                assertThrows(SQLTimeoutException.class, pool::getConnection);
+                assertEquals(1, pool.getStats().timeouts());
+            }
+        }
+    }
+
+    @Test
+    void uncommittedTransactionIsRolledBackOnReturn() throws Exception {
+        try (var pool = getPool(1)) {
+            try (var connection = pool.getConnection()) {
+                connection.setAutoCommit(false);
+            }
+
+            try (var connection = pool.getConnection()) {
+                assertTrue(connection.getAutoCommit());
+            }
+        }
+    }
+
+    @Test
+    void usingReturnedConnectionThrows() throws Exception {
+        try (var pool = getPool(1)) {
+            var connection = pool.getConnection();
+            connection.close();
+
+            assertTrue(connection.isClosed());
+            assertThrows(SQLException.class, connection::createStatement);
+        }
+    }
+
+    @Test
+    void pragmasAreAppliedToPooledConnections() throws Exception {
+        var databaseConfig = new DatabaseConfig();
+        databaseConfig.setBusyTimeoutMillis(1234);
+
+        try (var pool = new ConnectionPool("jdbc:sqlite:" + FILE_NAME, databaseConfig.getPool(),
+                databaseConfig::applyPragmas)) {
+            try (var connection = pool.getConnection(); var statement = connection.createStatement()) {
+                var journalMode = statement.executeQuery("pragma journal_mode");
+                assertTrue(journalMode.next());
+                assertEquals("wal", journalMode.getString(1));
+
+                var busyTimeout = statement.executeQuery("pragma busy_timeout");
+                assertTrue(busyTimeout.next());
+                assertEquals(1234, busyTimeout.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    void preparedStatementsAreCachedPerConnection() throws Exception {
+        try (var pool = getPool(1)) {
+            for (int i = 0; i < 5; i++) {
+                try (var connection = pool.getConnection();
+                     var statement = connection.prepareStatement("select ?")) {
+                    statement.setInt(1, i);
+                    var rs = statement.executeQuery();
+                    assertTrue(rs.next());
+                    assertEquals(i, rs.getInt(1));
+                }
+            }
+
+            var stats = pool.getStats();
+            assertEquals(4, stats.statementCacheHits());
+            assertEquals(1, stats.statementCacheMisses());
+        }
+    }
+
+    @Test
+    void statementStillInUseIsNotShared() throws Exception {
+        try (var pool = getPool(1); var connection = pool.getConnection()) {
+            try (var outer = connection.prepareStatement("select ?");
+                 var inner = connection.prepareStatement("select ?")) {
+                outer.setInt(1, 1);
+                inner.setInt(1, 2);
+
+                var outerRs = outer.executeQuery();
+                var innerRs = inner.executeQuery();
+                assertTrue(outerRs.next());
+                assertTrue(innerRs.next());
+                assertEquals(1, outerRs.getInt(1));
+                assertEquals(2, innerRs.getInt(1));
+            }
+
+            assertEquals(2, pool.getStats().statementCacheMisses());
+        }
+    }
+
+    @Test
+    void usingClosedCachedStatementThrows() throws Exception {
+        try (var pool = getPool(1); var connection = pool.getConnection()) {
+            var statement = connection.prepareStatement("select 1");
+            statement.close();
+
+            assertTrue(statement.isClosed());
+            assertThrows(SQLException.class, statement::executeQuery);
+        }
+    }
+
+    @AfterAll
+    static void Cleanup() {
+        new File(FILE_NAME).deleteOnExit();
+    }
+}
@@ -1,10 +1,14 @@
 import gunlender.domain.exceptions.CryptoException;
 import gunlender.domain.services.CryptoService;
+import gunlender.domain.services.HashingPolicy;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -48,4 +52,92 @@ class CryptoServiceTest {
             assertTrue(crypto.comparePasswordAndHash(password, hash1));
         });
     }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"PBKDF2WithHmacSHA1", "PBKDF2WithHmacSHA256", "PBKDF2WithHmacSHA512"})
+    void derivedKeyMatchesSecretKeyFactory(String algorithm) throws Exception {
+        var crypto = new CryptoService(algorithm);
+        var salt = crypto.generateSalt();
+        var password = "Za\u017c\u00f3\u0142\u0107 g\u0119\u015bl\u0105 123";
+
+        var expected = SecretKeyFactory.getInstance(algorithm)
+                .generateSecret(new PBEKeySpec(password.toCharArray(), salt, 1000, 512)).getEncoded();
+        var encoder = Base64.getEncoder();
+
+        assertEquals(algorithm + ":1000:" + encoder.encodeToString(salt) + ":" + encoder.encodeToString(expected),
+                crypto.hashPassword(password, salt, 1000));
+    }
+
+    @Test
+    void differentPasswordDoesNotMatch() throws Exception {
+        var crypto = new CryptoService("PBKDF2WithHmacSHA1");
+        var hash = crypto.hashPassword("SomePassword");
+
+        assertFalse(crypto.comparePasswordAndHash("SomePassword!", hash));
+        assertFalse(crypto.comparePasswordAndHash("", hash));
+    }
+
+    @Test
+    void legacyHashStillVerifiesAndNeedsRehash() throws Exception {
+        var salt = new CryptoService().generateSalt();
+        var key = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1")
+                .generateSecret(new PBEKeySpec("SomePassword".toCharArray(), salt, 100, 512)).getEncoded();
+        var legacyHash = "100:" + Base64.getEncoder().encodeToString(salt) + ":"
+                + Base64.getEncoder().encodeToString(key);
+        var crypto = new CryptoService(new HashingPolicy("PBKDF2WithHmacSHA256", 1000, 256));
+
+        assertTrue(crypto.comparePasswordAndHash("SomePassword", legacyHash));
+        assertFalse(crypto.comparePasswordAndHash("OtherPassword", legacyHash));
+        assertTrue(crypto.needsRehash(legacyHash));
+
+        var upgraded = crypto.hashPassword("SomePassword");
+        assertTrue(upgraded.startsWith("PBKDF2WithHmacSHA256:1000:"));
+        assertTrue(crypto.comparePasswordAndHash("SomePassword", upgraded));
+        assertFalse(crypto.needsRehash(upgraded));
+    }
+
+    @Test
+    void raisingIterationsRequiresRehash() throws Exception {
+        var crypto = new CryptoService(new HashingPolicy("PBKDF2WithHmacSHA256", 1000, 256));
+        var hash = crypto.hashPassword("SomePassword");
+
+        crypto.setPolicy(new HashingPolicy("PBKDF2WithHmacSHA256", 2000, 256));
+
+        assertTrue(crypto.comparePasswordAndHash("SomePassword", hash));
+        assertTrue(crypto.needsRehash(hash));
+    }
+
+    @Test
+    void calibrationDriftDoesNotRequireRehash() throws Exception {
+        var crypto = new CryptoService(new HashingPolicy("PBKDF2WithHmacSHA256", 20_000, 256));
+        var hash = crypto.hashPassword("SomePassword");
+
+        // What the next boot may calibrate to on the same machine
+        crypto.setPolicy(new HashingPolicy("PBKDF2WithHmacSHA256", 21_000, 256));
+        assertFalse(crypto.needsRehash(hash));
+
+        crypto.setPolicy(new HashingPolicy("PBKDF2WithHmacSHA256", 23_000, 256));
+        assertFalse(crypto.needsRehash(hash));
+
+        crypto.setPolicy(new HashingPolicy("PBKDF2WithHmacSHA256", 20_000, 512));
+        assertTrue(crypto.needsRehash(hash));
+    }
+
+    @Test
+    void calibrationStaysAboveMinimum() throws Exception {
+        var policy = HashingPolicy.calibrate("PBKDF2WithHmacSHA256", 256, 1);
+
+        assertEquals("PBKDF2WithHmacSHA256", policy.algorithm());
+        assertTrue(policy.iterations() >= 10_000);
+        assertEquals(0, policy.iterations() % 1000);
+    }
+
+    @Test
+    void malformedStoredHashThrows() throws Exception {
+        var crypto = new CryptoService("PBKDF2WithHmacSHA1");
+
+        assertThrows(CryptoException.class, () -> crypto.comparePasswordAndHash("password", "100:c2FsdA=="));
+        assertThrows(CryptoException.class, () -> crypto.comparePasswordAndHash("password", "100:c2FsdA==:"));
+        assertThrows(CryptoException.class, () -> crypto.comparePasswordAndHash("password", "x:c2FsdA==:a2V5"));
+    }
 }
@@ -0,0 +1,77 @@
+import gunlender.Main;
+import gunlender.domain.services.HashingPolicy;
+import gunlender.infrastructure.database.Database;
+import gunlender.infrastructure.database.DatabaseConfig;
+import gunlender.server.ThreadMode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseBusyTest {
+    private static final String FILE_NAME = "gunlender" + UUID.randomUUID() + ".db";
+
+    @Test
+    void routesAnswerServiceUnavailableWhenLimiterTimesOut() throws Exception {
+        var config = DatabaseConfig.forEnvironment("test");
+        config.setUrl("jdbc:sqlite:" + FILE_NAME);
+        config.setMaxConcurrency(1);
+        config.getPool().setAcquireTimeoutMillis(200);
+
+        try (var database = Database.open(config)) {
+            var app = Main.start(database, HashingPolicy.LEGACY, ThreadMode.PLATFORM, 0);
+            var http = HttpClient.newHttpClient();
+            var baseUri = "http://localhost:" + app.port() + "/";
+            var holding = new CountDownLatch(1);
+            var release = new CountDownLatch(1);
+            var executor = Executors.newSingleThreadExecutor();
+
+            try {
+                var held = executor.submit(() -> database.read(connection -> {
+                    holding.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new SQLException(e);
+                    }
+                    return null;
+                }));
+                holding.await();
+
+                for (var path : new String[]{"gun/?limit=10", "gun/"}) {
+                    var response = http.send(HttpRequest.newBuilder(URI.create(baseUri + path)).GET().build(),
+                            HttpResponse.BodyHandlers.ofString());
+
+                    assertEquals(503, response.statusCode(), path);
+                    assertEquals("1", response.headers().firstValue("Retry-After").orElse(null), path);
+                }
+
+                release.countDown();
+                held.get();
+
+                var response = http.send(HttpRequest.newBuilder(URI.create(baseUri + "gun/?limit=10")).GET().build(),
+                        HttpResponse.BodyHandlers.ofString());
+                assertEquals(200, response.statusCode());
+            } finally {
+                release.countDown();
+                executor.shutdown();
+                app.stop();
+            }
+        }
+    }
+
+    @AfterAll
+    static void Cleanup() {
+        new File(FILE_NAME).deleteOnExit();
+    }
+}
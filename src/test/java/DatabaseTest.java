@@ -0,0 +1,252 @@
+import gunlender.infrastructure.database.Database;
+import gunlender.infrastructure.database.DatabaseConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseTest {
+    private static final String FILE_NAME = "gunlender" + UUID.randomUUID() + ".db";
+
+    private Database getDatabase() throws Exception {
+        return getDatabase(0);
+    }
+
+    private Database getDatabase(int maxConcurrency) throws Exception {
+        var config = DatabaseConfig.forEnvironment("test");
+        config.setUrl("jdbc:sqlite:" + FILE_NAME);
+        if (maxConcurrency > 0) {
+            config.setMaxConcurrency(maxConcurrency);
+            config.getPool().setAcquireTimeoutMillis(200);
+        }
+        var database = Database.open(config);
+
+        database.write(connection -> {
+            try (var statement = connection.createStatement()) {
+                statement.executeUpdate("create table if not exists counters (Name VARCHAR(16), Value INT)");
+                return statement.executeUpdate("delete from counters");
+            }
+        });
+
+        return database;
+    }
+
+    @Test
+    void committedWriteIsVisibleToReaders() throws Exception {
+        try (var database = getDatabase()) {
+            database.write(connection -> {
+                try (var statement = connection.createStatement()) {
+                    return statement.executeUpdate("insert into counters values ('a', 1)");
+                }
+            });
+
+            var count = database.read(connection -> {
+                try (var statement = connection.createStatement()) {
+                    var rs = statement.executeQuery("select count(*) from counters");
+                    rs.next();
+                    return rs.getInt(1);
+                }
+            });
+
+            assertEquals(1, count);
+        }
+    }
+
+    @Test
+    void failedWriteIsRolledBack() throws Exception {
+        try (var database = getDatabase()) {
+            assertThrows(SQLException.class, () -> database.write(connection -> {
+                try (var statement = connection.createStatement()) {
+                    statement.executeUpdate("insert into counters values ('a', 1)");
+                    return statement.executeUpdate("insert into missing_table values (1)");
+                }
+            }));
+
+            var count = database.read(connection -> {
+                try (var statement = connection.createStatement()) {
+                    var rs = statement.executeQuery("select count(*) from counters");
+                    rs.next();
+                    return rs.getInt(1);
+                }
+            });
+
+            assertEquals(0, count);
+            assertEquals(1, database.getStats().writer().failed());
+        }
+    }
+
+    @Test
+    void writerSurvivesErrors() throws Exception {
+        try (var database = getDatabase()) {
+            assertThrows(StackOverflowError.class, () -> database.write(connection -> {
+                try (var statement = connection.createStatement()) {
+                    statement.executeUpdate("insert into counters values ('a', 1)");
+                }
+                throw new StackOverflowError();
+            }));
+
+            database.write(connection -> {
+                database.afterCommit(() -> {
+                    throw new AssertionError("After commit action failed");
+                });
+                try (var statement = connection.createStatement()) {
+                    return statement.executeUpdate("insert into counters values ('b', 1)");
+                }
+            });
+
+            database.write(connection -> {
+                try (var statement = connection.createStatement()) {
+                    return statement.executeUpdate("insert into counters values ('c', 1)");
+                }
+            });
+
+            var names = database.read(connection -> {
+                var found = new ArrayList<String>();
+                try (var statement = connection.createStatement()) {
+                    var rs = statement.executeQuery("select Name from counters order by Name");
+                    while (rs.next()) {
+                        found.add(rs.getString(1));
+                    }
+                }
+                return found;
+            });
+
+            assertEquals(List.of("b", "c"), names);
+        }
+    }
+
+    @Test
+    void readersCannotWrite() throws Exception {
+        try (var database = getDatabase()) {
+            assertThrows(SQLException.class, () -> database.read(connection -> {
+                try (var statement = connection.createStatement()) {
+                    return statement.executeUpdate("insert into counters values ('a', 1)");
+                }
+            }));
+        }
+    }
+
+    @Test
+    void groupedWritesShareCommitsButFailIndividually() throws Exception {
+        try (var database = getDatabase()) {
+            var executor = Executors.newFixedThreadPool(32);
+            var results = new ArrayList<Future<Integer>>();
+
+            for (int i = 0; i < 200; i++) {
+                var failing = i % 10 == 0;
+                results.add(executor.submit((Callable<Integer>) () -> database.writeGrouped(connection -> {
+                    try (var statement = connection.createStatement()) {
+                        statement.executeUpdate("insert into counters values ('a', 1)");
+                        if (failing) {
+                            statement.executeUpdate("insert into missing_table values (1)");
+                        }
+                        return 1;
+                    }
+                })));
+            }
+
+            var failures = 0;
+            for (var result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException ex) {
+                    assertInstanceOf(SQLException.class, ex.getCause());
+                    failures++;
+                }
+            }
+            executor.shutdown();
+
+            var count = database.read(connection -> {
+                try (var statement = connection.createStatement()) {
+                    var rs = statement.executeQuery("select count(*) from counters");
+                    rs.next();
+                    return rs.getInt(1);
+                }
+            });
+
+            assertEquals(20, failures);
+            assertEquals(180, count);
+            assertTrue(database.getStats().writer().batches() < 200);
+        }
+    }
+
+    @Test
+    void callersOverConcurrencyLimitGiveUp() throws Exception {
+        try (var database = getDatabase(1)) {
+            var holding = new CountDownLatch(1);
+            var release = new CountDownLatch(1);
+            var executor = Executors.newSingleThreadExecutor();
+
+            var held = executor.submit(() -> database.read(connection -> {
+                holding.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                }
+                return null;
+            }));
+
+            holding.await();
+            assertThrows(SQLTransientException.class, () -> database.read(connection -> null));
+            release.countDown();
+            held.get();
+            executor.shutdown();
+
+            assertEquals(1, database.getStats().limiter().rejected());
+            assertEquals(0, database.getStats().limiter().inUse());
+        }
+    }
+
+    @Test
+    void writesPassConcurrencyLimitOfOne() throws Exception {
+        try (var database = getDatabase(1)) {
+            var executor = Executors.newFixedThreadPool(8);
+            var results = new ArrayList<Future<Integer>>();
+
+            for (int i = 0; i < 50; i++) {
+                results.add(executor.submit((Callable<Integer>) () -> database.writeGrouped(connection -> {
+                    try (var statement = connection.createStatement()) {
+                        return statement.executeUpdate("insert into counters values ('a', 1)");
+                    }
+                })));
+            }
+
+            var written = 0;
+            for (var result : results) {
+                try {
+                    written += result.get();
+                } catch (ExecutionException ex) {
+                    // Waiting longer than the timeout behind the others is allowed, anything else is not
+                    assertInstanceOf(SQLTransientException.class, ex.getCause());
+                }
+            }
+            executor.shutdown();
+
+            assertEquals(written, (int) database.read(connection -> {
+                try (var statement = connection.createStatement()) {
+                    var rs = statement.executeQuery("select count(*) from counters");
+                    rs.next();
+                    return rs.getInt(1);
+                }
+            }));
+        }
+    }
+
+    @AfterAll
+    static void Cleanup() {
+        new File(FILE_NAME).deleteOnExit();
+    }
+}
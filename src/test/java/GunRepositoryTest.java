@@ -1,13 +1,28 @@
+import gunlender.application.PageRequest;
+import gunlender.application.dto.GunDto;
+import gunlender.application.dto.GunFilter;
 import gunlender.domain.entities.Gun;
 import gunlender.domain.entities.Weapon;
+import gunlender.domain.exceptions.OutOfStockException;
 import gunlender.infrastructure.database.GunRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @Slf4j
 class GunRepositoryTest extends BaseRepositoryTest {
@@ -40,6 +55,75 @@ class GunRepositoryTest extends BaseRepositoryTest {
         });
     }
 
+    @Test
+    void streamingGunsYieldsEveryRow() throws Exception {
+        var gunRepo = getRepository();
+
+        var gun1 = new Gun(producer(), model(), weaponType(), caliber(), weight(), length(), amount(), price(), picture());
+        var gun2 = new Gun(producer(), model(), weaponType(), caliber(), weight(), length(), amount(), price(), picture());
+
+        gunRepo.addGun(gun1);
+        gunRepo.addGun(gun2);
+
+        var ids = new ArrayList<UUID>();
+        gunRepo.streamGuns(gun -> ids.add(gun.getId()));
+
+        assertEquals(List.of(gun1.getId(), gun2.getId()), ids);
+    }
+
+    @Test
+    void pagingReturnsEveryGunOnce() throws Exception {
+        var gunRepo = getRepository();
+        var expected = new HashSet<UUID>();
+
+        for (int i = 0; i < 7; i++) {
+            var gun = new Gun(producer(), model(), weaponType(), caliber(), weight(), length(), amount(), price(), picture());
+            gunRepo.addGun(gun);
+            expected.add(gun.getId());
+        }
+
+        var seen = new ArrayList<UUID>();
+        var pages = 0;
+        String cursor = null;
+
+        do {
+            var page = gunRepo.getGuns(new GunFilter(), new PageRequest(cursor, 3));
+            page.items().forEach(gun -> seen.add(gun.getId()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(7, seen.size());
+        assertEquals(expected, new HashSet<>(seen));
+    }
+
+    @Test
+    void filteringGunsByTypeAndPrice() throws Exception {
+        var gunRepo = getRepository();
+
+        var cheapPistol = new Gun(producer(), model(), Weapon.WeaponType.PISTOL, caliber(), weight(), length(), 1,
+                10, picture());
+        var expensivePistol = new Gun(producer(), model(), Weapon.WeaponType.PISTOL, caliber(), weight(), length(), 1,
+                900, picture());
+        var rifle = new Gun(producer(), model(), Weapon.WeaponType.RIFLE, caliber(), weight(), length(), 1,
+                10, picture());
+
+        gunRepo.addGun(cheapPistol);
+        gunRepo.addGun(expensivePistol);
+        gunRepo.addGun(rifle);
+
+        var filter = new GunFilter();
+        filter.setType(Weapon.WeaponType.PISTOL);
+        filter.setMaxPrice(100.0);
+
+        var page = gunRepo.getGuns(filter, PageRequest.first(PageRequest.DEFAULT_LIMIT));
+
+        assertEquals(1, page.items().size());
+        assertEquals(cheapPistol.getId(), page.items().get(0).getId());
+        assertNull(page.nextCursor());
+    }
+
     @Test
     void retrievingExistingUserByIdDoesNotThrow() throws Exception {
         var gunRepo = getRepository();
@@ -65,6 +149,104 @@ class GunRepositoryTest extends BaseRepositoryTest {
         });
     }
 
+    @Test
+    void versionOnlyAdvancesOnCommittedWrites() throws Exception {
+        var gunRepo = getRepository();
+        var database = databases.get(databases.size() - 1);
+        var gun = new Gun(producer(), model(), weaponType(), caliber(), weight(), length(), amount(), price(), picture());
+
+        gunRepo.addGun(gun);
+        var afterInsert = gunRepo.getVersion();
+
+        assertThrows(SQLException.class, () -> database.write(connection -> {
+            gunRepo.updateGun(gun.getId(), GunDto.fromEntity(gun), connection);
+            throw new SQLException("Abort");
+        }));
+        assertEquals(afterInsert, gunRepo.getVersion());
+
+        gunRepo.updateGun(gun.getId(), GunDto.fromEntity(gun));
+        assertEquals(afterInsert + 1, gunRepo.getVersion());
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        var gunRepo = getRepository();
+        var database = databases.get(databases.size() - 1);
+        var gun = new Gun(producer(), model(), weaponType(), caliber(), weight(), length(), 100, price(), picture());
+        gunRepo.addGun(gun);
+
+        var executor = Executors.newFixedThreadPool(64);
+        var results = new ArrayList<Future<Object>>();
+
+        for (int i = 0; i < 400; i++) {
+            results.add(executor.submit(() -> database.writeGrouped(connection -> {
+                gunRepo.reserveGun(gun.getId(), connection);
+                return null;
+            })));
+        }
+
+        var reserved = 0;
+        var outOfStock = 0;
+        for (var result : results) {
+            try {
+                result.get();
+                reserved++;
+            } catch (ExecutionException ex) {
+                assertInstanceOf(OutOfStockException.class, ex.getCause());
+                outOfStock++;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(100, reserved);
+        assertEquals(300, outOfStock);
+        assertEquals(0, gunRepo.getGunById(gun.getId()).orElseThrow().getAmount());
+    }
+
+    @Test
+    void failedReservationRollsBackTheWholeWrite() throws Exception {
+        var gunRepo = getRepository();
+        var database = databases.get(databases.size() - 1);
+        var available = new Gun(producer(), model(), weaponType(), caliber(), weight(), length(), 1, price(), picture());
+        var soldOut = new Gun(producer(), model(), weaponType(), caliber(), weight(), length(), 0, price(), picture());
+        gunRepo.addGun(available);
+        gunRepo.addGun(soldOut);
+
+        assertThrows(OutOfStockException.class, () -> database.write(connection -> {
+            gunRepo.reserveGun(available.getId(), connection);
+            gunRepo.reserveGun(soldOut.getId(), connection);
+            return null;
+        }));
+
+        assertEquals(1, gunRepo.getGunById(available.getId()).orElseThrow().getAmount());
+
+        database.write(connection -> gunRepo.releaseGun(soldOut.getId(), connection));
+        assertEquals(1, gunRepo.getGunById(soldOut.getId()).orElseThrow().getAmount());
+        boolean releasedUnknown = database.write(connection -> gunRepo.releaseGun(UUID.randomUUID(), connection));
+        assertFalse(releasedUnknown);
+    }
+
+    @Test
+    void columnsMatchTableAndRoundTrip() throws Exception {
+        var gunRepo = getRepository();
+        var gun = new Gun(producer(), model(), weaponType(), caliber(), weight(), length(), amount(), price(), picture());
+        gunRepo.addGun(gun);
+
+        assertEquals(List.of(Gun.COLUMNS.split(", ")), tableColumns("guns"));
+
+        var stored = gunRepo.getGunById(gun.getId()).orElseThrow();
+        assertEquals(gun.getId(), stored.getId());
+        assertEquals(gun.getProducer(), stored.getProducer());
+        assertEquals(gun.getModel(), stored.getModel());
+        assertEquals(gun.getType(), stored.getType());
+        assertEquals(gun.getCaliber(), stored.getCaliber());
+        assertEquals(gun.getWeight(), stored.getWeight());
+        assertEquals(gun.getLength(), stored.getLength());
+        assertEquals(gun.getAmount(), stored.getAmount());
+        assertEquals(gun.getPrice(), stored.getPrice());
+        assertEquals(gun.getPicture(), stored.getPicture());
+    }
+
     private String producer() {
         return FAKER.company().name();
     }
@@ -105,6 +287,6 @@ class GunRepositoryTest extends BaseRepositoryTest {
     }
 
     private String picture() {
-        return FAKER.regexify("https://[a-z]{5,20}.local");
+        return FAKER.regexify("https://[a-z]{5,20}\\.local");
     }
 }
@@ -0,0 +1,72 @@
+import gunlender.domain.services.JwtService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTest {
+
+    @Test
+    void repeatedTokenIsAnsweredFromCache() {
+        var jwt = new JwtService();
+        var header = "Bearer " + jwt.generateJwt(UUID.randomUUID(), "someone@example.com", "administrator");
+
+        var first = jwt.getClaims(header);
+        var second = jwt.getClaims(header);
+
+        assertTrue(first.isPresent());
+        assertSame(first.get(), second.orElseThrow());
+        assertEquals("administrator", second.get().getBody().get("Role", String.class));
+        assertEquals(1, jwt.getCachedTokens());
+    }
+
+    @Test
+    void tokenCarriesUserId() {
+        var jwt = new JwtService();
+        var userId = UUID.randomUUID();
+        var claims = jwt.getClaims("Bearer " + jwt.generateJwt(userId, "someone@example.com", "standard_user"));
+
+        assertEquals(userId.toString(), claims.orElseThrow().getBody().get("UserId", String.class));
+        assertEquals("someone@example.com", claims.get().getBody().getSubject());
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        var jwt = new JwtService();
+        var token = jwt.generateJwt(UUID.randomUUID(), "someone@example.com", "standard_user");
+        var forged = new JwtService().generateJwt(UUID.randomUUID(), "someone@example.com", "administrator");
+
+        assertTrue(jwt.getClaims("Bearer " + token).isPresent());
+        assertTrue(jwt.getClaims("Bearer " + forged).isEmpty());
+        assertTrue(jwt.getClaims("Bearer " + token.substring(0, token.length() - 2)).isEmpty());
+        assertEquals(1, jwt.getCachedTokens());
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        var key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+        var jwt = new JwtService(key, JwtService.DEFAULT_CACHE_SIZE);
+        var token = Jwts.builder().setSubject("someone@example.com").claim("Role", "standard_user")
+                .setExpiration(new Date(System.currentTimeMillis() - 60_000)).signWith(key).compact();
+
+        assertTrue(jwt.getClaims("Bearer " + token).isEmpty());
+        assertEquals(0, jwt.getCachedTokens());
+    }
+
+    @Test
+    void cacheStaysWithinItsCapacity() {
+        var jwt = new JwtService(Keys.secretKeyFor(SignatureAlgorithm.HS256), 8);
+
+        for (int i = 0; i < 100; i++) {
+            var token = jwt.generateJwt(UUID.randomUUID(), "user" + i + "@example.com", "standard_user");
+            assertTrue(jwt.getClaims("Bearer " + token).isPresent());
+        }
+
+        assertTrue(jwt.getCachedTokens() <= 8);
+    }
+}
@@ -0,0 +1,82 @@
+import gunlender.Main;
+import gunlender.domain.entities.Ammo;
+import gunlender.domain.entities.Gun;
+import gunlender.domain.entities.User;
+import gunlender.domain.entities.Weapon;
+import gunlender.domain.services.AuthManager;
+import gunlender.domain.services.CryptoService;
+import gunlender.domain.services.HashingPolicy;
+import gunlender.infrastructure.database.AmmoRepository;
+import gunlender.infrastructure.database.Database;
+import gunlender.infrastructure.database.DatabaseConfig;
+import gunlender.infrastructure.database.GunRepository;
+import gunlender.infrastructure.database.UserRepository;
+import gunlender.server.ThreadMode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LendingControllerTest {
+    private static final String FILE_NAME = "gunlender" + UUID.randomUUID() + ".db";
+    private static final String PASSWORD = "SomePassword1!";
+
+    @Test
+    void rentingSameGunAndAmmoTwiceIsAConflict() throws Exception {
+        var config = DatabaseConfig.forEnvironment("test");
+        config.setUrl("jdbc:sqlite:" + FILE_NAME);
+
+        try (var database = Database.open(config)) {
+            var app = Main.start(database, HashingPolicy.LEGACY, ThreadMode.PLATFORM, 0);
+
+            try {
+                var guns = new GunRepository(database);
+                var ammo = new AmmoRepository(database);
+                var gun = new Gun("Producer", "Model", Weapon.WeaponType.PISTOL, "9mm", 1, 200, 5, 100, "");
+                var rounds = new Ammo("9mm", 100, 1, "");
+                var user = new User("First", "Last", "renter@local.com", "123456789",
+                        new CryptoService(HashingPolicy.LEGACY).hashPassword(PASSWORD),
+                        AuthManager.Role.STANDARD_USER);
+                guns.addGun(gun);
+                ammo.addAmmo(rounds);
+                new UserRepository(database).addUser(user);
+
+                var http = HttpClient.newHttpClient();
+                var baseUri = "http://localhost:" + app.port() + "/";
+                var login = http.send(HttpRequest.newBuilder(URI.create(baseUri + "login"))
+                        .POST(HttpRequest.BodyPublishers.ofString(String.format(
+                                "{\"email\":\"%s\",\"password\":\"%s\"}", user.getEmail(), PASSWORD)))
+                        .build(), HttpResponse.BodyHandlers.ofString());
+                var token = login.headers().firstValue("Authorization").orElseThrow();
+                var rent = HttpRequest.newBuilder(URI.create(baseUri + "lending/"))
+                        .header("Authorization", token)
+                        .POST(HttpRequest.BodyPublishers.ofString(String.format("{\"userId\":\"%s\",\"gunId\":\"%s\"," +
+                                        "\"ammoId\":\"%s\",\"ammoAmount\":10,\"reservationDate\":\"%s\"}",
+                                user.getId(), gun.getId(), rounds.getId(), Instant.now())))
+                        .build();
+
+                assertEquals(201, http.send(rent, HttpResponse.BodyHandlers.ofString()).statusCode());
+                assertEquals(409, http.send(rent, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+                // The second rental rolled back its reservations
+                assertEquals(4, guns.getGunById(gun.getId()).orElseThrow().getAmount());
+                assertEquals(90, ammo.getAmmoById(rounds.getId()).orElseThrow().getAmount());
+            } finally {
+                app.stop();
+            }
+        }
+    }
+
+    @AfterAll
+    static void Cleanup() {
+        new File(FILE_NAME).deleteOnExit();
+    }
+}
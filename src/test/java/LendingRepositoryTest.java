@@ -1,14 +1,27 @@
+import gunlender.application.PageRequest;
+import gunlender.application.dto.LendingFilter;
 import gunlender.domain.entities.Lending;
+import gunlender.domain.exceptions.DuplicateLendingException;
+import gunlender.domain.exceptions.RepositoryException;
+import gunlender.infrastructure.database.Database;
+import gunlender.infrastructure.database.DatabaseConfig;
 import gunlender.infrastructure.database.LendingRepository;
+import gunlender.infrastructure.database.MigrationRunner;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Slf4j
 class LendingRepositoryTest extends BaseRepositoryTest {
@@ -136,6 +149,206 @@ class LendingRepositoryTest extends BaseRepositoryTest {
         });
     }
 
+    @Test
+    void pagingOrdersLendingsByReservationDate() throws Exception {
+        var lendingRepo = getRepository();
+        var start = Instant.parse("2022-03-01T10:00:00Z");
+
+        for (var day : List.of(3, 0, 4, 1, 2)) {
+            lendingRepo.addLending(new Lending(id(), id(), id(), amount(), start.plus(day, ChronoUnit.DAYS), price()));
+        }
+
+        var filter = new LendingFilter();
+        filter.setReservedFrom(start.plus(1, ChronoUnit.DAYS));
+
+        var first = lendingRepo.getLendings(filter, new PageRequest(null, 2));
+        var second = lendingRepo.getLendings(filter, new PageRequest(first.nextCursor(), 2));
+
+        assertEquals(List.of(start.plus(1, ChronoUnit.DAYS), start.plus(2, ChronoUnit.DAYS)),
+                first.items().stream().map(Lending::getReservationDate).toList());
+        assertEquals(List.of(start.plus(3, ChronoUnit.DAYS), start.plus(4, ChronoUnit.DAYS)),
+                second.items().stream().map(Lending::getReservationDate).toList());
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void streamingReadsEveryLendingWithoutHoldingTheConnection() throws Exception {
+        var fileName = "gunlender" + UUID.randomUUID() + ".db";
+        var config = DatabaseConfig.forEnvironment("test");
+        config.setUrl("jdbc:sqlite:" + fileName);
+        config.setMaxConcurrency(1);
+        config.getPool().setAcquireTimeoutMillis(200);
+        var database = Database.open(config);
+        databases.add(database);
+        databaseFiles.add(fileName);
+
+        var lendingRepo = new LendingRepository(database);
+        new MigrationRunner(database).migrate(lendingRepo);
+
+        var userId = id();
+        var start = Instant.parse("2022-03-01T10:00:00Z");
+        var count = PageRequest.MAX_LIMIT + 20;
+        for (var i = 0; i < count; i++) {
+            lendingRepo.addLending(new Lending(userId, id(), id(), amount(), start.plusSeconds(i), price()));
+        }
+
+        var streamed = new ArrayList<Instant>();
+        lendingRepo.streamLendingsByUserId(userId, lending -> {
+            // The only database permit is free again while rows are handed out
+            assertDoesNotThrow(() -> lendingRepo.getLending(userId, lending.getGunId(), lending.getAmmoId()));
+            streamed.add(lending.getReservationDate());
+        });
+
+        assertEquals(count, streamed.size());
+        assertEquals(start.plusSeconds(count - 1), streamed.get(count - 1));
+    }
+
+    @Test
+    void filtersCompareSubSecondReservationsByTime() throws Exception {
+        var lendingRepo = getRepository();
+        var boundary = Instant.parse("2022-03-01T10:00:00Z");
+
+        for (var millis : List.of(-500, 0, 500, 1000)) {
+            lendingRepo.addLending(new Lending(id(), id(), id(), amount(), boundary.plusMillis(millis), price()));
+        }
+
+        var from = new LendingFilter();
+        from.setReservedFrom(boundary);
+        var to = new LendingFilter();
+        to.setReservedTo(boundary);
+
+        assertEquals(List.of(boundary, boundary.plusMillis(500), boundary.plusMillis(1000)),
+                reservationDates(lendingRepo.getLendings(from, PageRequest.first(10)).items()));
+        assertEquals(List.of(boundary.minusMillis(500)),
+                reservationDates(lendingRepo.getLendings(to, PageRequest.first(10)).items()));
+    }
+
+    @Test
+    void legacyReservationDatesAreRewrittenWithFixedWidth() throws Exception {
+        var boundary = Instant.parse("2022-03-01T10:00:00Z");
+        var database = getLegacyDatabase(new Lending(id(), id(), id(), amount(), boundary, price()),
+                new Lending(id(), id(), id(), amount(), boundary.plusMillis(500), price()));
+        var lendingRepo = new LendingRepository(database);
+
+        new MigrationRunner(database).migrate(lendingRepo);
+
+        var filter = new LendingFilter();
+        filter.setReservedTo(boundary.plusMillis(1));
+        assertEquals(List.of(boundary), reservationDates(lendingRepo.getLendings(filter, PageRequest.first(10)).items()));
+
+        var stored = database.read(connection -> {
+            try (var statement = connection.createStatement()) {
+                var rs = statement.executeQuery("select min(ReservationDate) from lendings");
+                return rs.next() ? rs.getString(1) : null;
+            }
+        });
+        assertEquals("2022-03-01T10:00:00.000000000Z", stored);
+    }
+
+    @Test
+    void malformedCursorIsRejected() throws Exception {
+        var lendingRepo = getRepository();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> lendingRepo.getLendings(new LendingFilter(), new PageRequest("not-a-cursor", 10)));
+    }
+
+    @Test
+    void insertingLendingWithExistingKeyThrows() throws Exception {
+        var lendingRepo = getRepository();
+
+        var lending1 = new Lending(id(), id(), id(), amount(), date(), price());
+        var lending2 = new Lending(lending1.getUserId(), lending1.getGunId(), lending1.getAmmoId(), amount(), date(),
+                price());
+
+        assertDoesNotThrow(() -> lendingRepo.addLending(lending1));
+
+        assertThrows(DuplicateLendingException.class, () -> lendingRepo.addLending(lending2));
+    }
+
+    @Test
+    void legacyTableWithoutDuplicatesGetsCompositeKey() throws Exception {
+        var database = getLegacyDatabase(new Lending(id(), id(), id(), amount(), date(), price()),
+                new Lending(id(), id(), id(), amount(), date(), price()));
+        var lendingRepo = new LendingRepository(database);
+
+        new MigrationRunner(database).migrate(lendingRepo);
+
+        var existing = lendingRepo.getLendings().get(0);
+        assertEquals(2, lendingRepo.getLendings().size());
+        assertThrows(RepositoryException.class, () -> lendingRepo.addLending(existing));
+    }
+
+    @Test
+    void legacyDuplicateKeysFailMigrationAndKeepEveryRow() throws Exception {
+        var lending = new Lending(id(), id(), id(), amount(), date(), price());
+        var rentedAgain = new Lending(lending.getUserId(), lending.getGunId(), lending.getAmmoId(), amount(), date(),
+                price());
+        var database = getLegacyDatabase(lending, rentedAgain, new Lending(id(), id(), id(), amount(), date(), price()));
+        var lendingRepo = new LendingRepository(database);
+
+        var failure = assertThrows(RepositoryException.class, () -> new MigrationRunner(database).migrate(lendingRepo));
+
+        assertTrue(failure.getCause().getMessage().contains(lending.getUserId().toString()));
+        assertEquals(3, lendingRepo.getLendings().size());
+    }
+
+    /**
+     * A lendings table as created before the composite key, holding the given rows.
+     */
+    private Database getLegacyDatabase(Lending... lendings) throws Exception {
+        var fileName = "gunlender" + UUID.randomUUID() + ".db";
+        var config = DatabaseConfig.forEnvironment("test");
+        config.setUrl("jdbc:sqlite:" + fileName);
+        var database = Database.open(config);
+        databases.add(database);
+        databaseFiles.add(fileName);
+
+        database.write(connection -> {
+            try (var statement = connection.createStatement()) {
+                statement.executeUpdate("create table lendings (UserId VARCHAR(16), GunId VARCHAR(16), " +
+                        "AmmoId VARCHAR(16), AmmoAmount INT, ReservationDate DATETIME, TotalPrice DECIMAL(10,2))");
+            }
+
+            try (var statement = connection.prepareStatement("insert into lendings values (?, ?, ?, ?, ?, ?)")) {
+                for (var lending : lendings) {
+                    statement.setString(1, lending.getUserId().toString());
+                    statement.setString(2, lending.getGunId().toString());
+                    statement.setString(3, lending.getAmmoId().toString());
+                    statement.setInt(4, lending.getAmmoAmount());
+                    statement.setString(5, lending.getReservationDate().toString());
+                    statement.setDouble(6, lending.getTotalPrice());
+                    statement.executeUpdate();
+                }
+            }
+            return null;
+        });
+
+        return database;
+    }
+
+    @Test
+    void columnsMatchTableAndRoundTrip() throws Exception {
+        var lendingRepo = getRepository();
+        var lending = new Lending(id(), id(), id(), amount(), date(), price());
+        lendingRepo.addLending(lending);
+
+        assertEquals(List.of(Lending.COLUMNS.split(", ")), tableColumns("lendings"));
+
+        var stored = lendingRepo.getLending(lending.getUserId(), lending.getGunId(), lending.getAmmoId())
+                .orElseThrow();
+        assertEquals(lending.getUserId(), stored.getUserId());
+        assertEquals(lending.getGunId(), stored.getGunId());
+        assertEquals(lending.getAmmoId(), stored.getAmmoId());
+        assertEquals(lending.getAmmoAmount(), stored.getAmmoAmount());
+        assertEquals(lending.getReservationDate(), stored.getReservationDate());
+        assertEquals(lending.getTotalPrice(), stored.getTotalPrice());
+    }
+
+    private List<Instant> reservationDates(List<Lending> lendings) {
+        return lendings.stream().map(Lending::getReservationDate).toList();
+    }
+
     private UUID id() {
         return UUID.randomUUID();
     }
@@ -0,0 +1,79 @@
+import gunlender.Main;
+import gunlender.domain.entities.User;
+import gunlender.domain.services.AuthManager;
+import gunlender.domain.services.CryptoService;
+import gunlender.domain.services.HashingPolicy;
+import gunlender.infrastructure.database.Database;
+import gunlender.infrastructure.database.DatabaseConfig;
+import gunlender.infrastructure.database.UserRepository;
+import gunlender.server.ThreadMode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsAccessTest {
+    private static final String FILE_NAME = "gunlender" + UUID.randomUUID() + ".db";
+    private static final String PASSWORD = "SomePassword1!";
+    private static final String[] PATHS = {"metrics", "metrics/database", "metrics/cache", "metrics/hashing"};
+
+    @Test
+    void onlyAdministratorsReadMetrics() throws Exception {
+        var config = DatabaseConfig.forEnvironment("test");
+        config.setUrl("jdbc:sqlite:" + FILE_NAME);
+
+        try (var database = Database.open(config)) {
+            var app = Main.start(database, HashingPolicy.LEGACY, ThreadMode.PLATFORM, 0);
+
+            try {
+                var http = HttpClient.newHttpClient();
+                var baseUri = "http://localhost:" + app.port() + "/";
+                var users = new UserRepository(database);
+                var standardToken = login(http, baseUri, users, "standard@local.com", "123456789",
+                        AuthManager.Role.STANDARD_USER);
+                var adminToken = login(http, baseUri, users, "admin@local.com", "987654321",
+                        AuthManager.Role.ADMINISTRATOR);
+
+                for (var path : PATHS) {
+                    assertEquals(401, get(http, baseUri + path, null).statusCode(), path);
+                    assertEquals(401, get(http, baseUri + path, standardToken).statusCode(), path);
+                    assertEquals(200, get(http, baseUri + path, adminToken).statusCode(), path);
+                }
+            } finally {
+                app.stop();
+            }
+        }
+    }
+
+    private static String login(HttpClient http, String baseUri, UserRepository users, String email,
+                                String phoneNumber, AuthManager.Role role) throws Exception {
+        users.addUser(new User("First", "Last", email, phoneNumber,
+                new CryptoService(HashingPolicy.LEGACY).hashPassword(PASSWORD), role));
+
+        var login = http.send(HttpRequest.newBuilder(URI.create(baseUri + "login"))
+                .POST(HttpRequest.BodyPublishers.ofString(String.format(
+                        "{\"email\":\"%s\",\"password\":\"%s\"}", email, PASSWORD)))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        return login.headers().firstValue("Authorization").orElseThrow();
+    }
+
+    private static HttpResponse<String> get(HttpClient http, String uri, String token) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create(uri)).GET();
+        if (token != null) {
+            request.header("Authorization", token);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @AfterAll
+    static void Cleanup() {
+        new File(FILE_NAME).deleteOnExit();
+    }
+}
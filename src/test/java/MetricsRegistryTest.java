@@ -0,0 +1,78 @@
+import gunlender.infrastructure.metrics.CounterFamily;
+import gunlender.infrastructure.metrics.Histogram;
+import gunlender.infrastructure.metrics.HistogramFamily;
+import gunlender.infrastructure.metrics.MetricsRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+    @Test
+    void observationsLandInCumulativeBuckets() {
+        var histogram = new Histogram(new double[]{0.001, 0.01});
+
+        histogram.observeNanos(500_000);
+        histogram.observeNanos(1_000_000);
+        histogram.observeNanos(5_000_000);
+        histogram.observeNanos(2_000_000_000L);
+
+        var snapshot = histogram.snapshot();
+        assertArrayEquals(new long[]{2, 3, 4}, snapshot.cumulativeCounts());
+        assertEquals(4, snapshot.count());
+        assertEquals(2.0065, snapshot.sumSeconds(), 1e-9);
+    }
+
+    @Test
+    void bucketBoundsMustIncrease() {
+        assertThrows(IllegalArgumentException.class, () -> new Histogram(new double[]{0.1, 0.1}));
+    }
+
+    @Test
+    void concurrentObservationsAreAllCounted() throws Exception {
+        var family = new HistogramFamily("test_seconds", "Test", "route");
+        var executor = Executors.newFixedThreadPool(16);
+        var results = new ArrayList<Future<?>>();
+
+        for (int i = 0; i < 16; i++) {
+            results.add(executor.submit(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    family.labels("/gun").observeNanos(j);
+                }
+            }));
+        }
+        for (var result : results) {
+            result.get();
+        }
+        executor.shutdown();
+
+        assertEquals(160_000, family.labels("/gun").snapshot().count());
+    }
+
+    @Test
+    void scrapeUsesTextExpositionFormat() {
+        var registry = new MetricsRegistry();
+        var counter = registry.register(new CounterFamily("requests_total", "Requests", "route", "status"));
+        var histogram = registry.register(new HistogramFamily("duration_seconds", "Duration",
+                new double[]{0.5}, "route"));
+
+        counter.labels("gun/{gun-id}", "200").add(3);
+        counter.labels("say \"hi\"", "404").increment();
+        histogram.labels("gun/").observeNanos(250_000_000);
+
+        var text = registry.scrape();
+
+        assertTrue(text.contains("# TYPE requests_total counter\n"));
+        assertTrue(text.contains("requests_total{route=\"gun/{gun-id}\",status=\"200\"} 3\n"));
+        assertTrue(text.contains("requests_total{route=\"say \\\"hi\\\"\",status=\"404\"} 1\n"));
+        assertTrue(text.contains("# TYPE duration_seconds histogram\n"));
+        assertTrue(text.contains("duration_seconds_bucket{route=\"gun/\",le=\"0.5\"} 1\n"));
+        assertTrue(text.contains("duration_seconds_bucket{route=\"gun/\",le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("duration_seconds_sum{route=\"gun/\"} 0.25\n"));
+        assertTrue(text.contains("duration_seconds_count{route=\"gun/\"} 1\n"));
+    }
+}
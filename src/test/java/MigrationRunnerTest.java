@@ -0,0 +1,204 @@
+import com.github.javafaker.Faker;
+import gunlender.application.Migration;
+import gunlender.application.Repository;
+import gunlender.domain.entities.Gun;
+import gunlender.domain.entities.Weapon;
+import gunlender.domain.exceptions.RepositoryException;
+import gunlender.infrastructure.database.Database;
+import gunlender.infrastructure.database.DatabaseConfig;
+import gunlender.infrastructure.database.GunRepository;
+import gunlender.infrastructure.database.IdFormat;
+import gunlender.infrastructure.database.MigrationRunner;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MigrationRunnerTest {
+    private static final Faker FAKER = new Faker();
+    private static final List<String> databaseFiles = new ArrayList<>();
+
+    private record TestRepository(String getSchemaName, List<Migration> getMigrations, List<String> getIdColumns)
+            implements Repository {
+        TestRepository(String schemaName, List<Migration> migrations) {
+            this(schemaName, migrations, List.of());
+        }
+    }
+
+    private Database getDatabase() {
+        var fileName = "gunlender" + UUID.randomUUID() + ".db";
+        databaseFiles.add(fileName);
+        return getDatabase(fileName, IdFormat.TEXT);
+    }
+
+    private Database getDatabase(String fileName, IdFormat idFormat) {
+        var config = DatabaseConfig.forEnvironment("test");
+        config.setUrl("jdbc:sqlite:" + fileName);
+        config.setIdFormat(idFormat);
+        return Database.open(config);
+    }
+
+    private int count(Database database, String sql) throws Exception {
+        return database.read(connection -> {
+            try (var statement = connection.createStatement()) {
+                var rs = statement.executeQuery(sql);
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        });
+    }
+
+    @Test
+    void onlyPendingMigrationsAreApplied() throws Exception {
+        try (var database = getDatabase()) {
+            var runner = new MigrationRunner(database);
+            var first = Migration.sql(1, "Create counters", "create table counters (Name VARCHAR(16))");
+            var second = Migration.sql(2, "Seed counters", "insert into counters values ('a')");
+
+            runner.migrate(new TestRepository("counters", List.of(first)));
+            runner.migrate(new TestRepository("counters", List.of(first, second)));
+            runner.migrate(new TestRepository("counters", List.of(first, second)));
+
+            assertEquals(1, count(database, "select count(*) from counters"));
+            assertEquals(2, count(database, "select count(*) from schema_version where Component = 'counters'"));
+        }
+    }
+
+    @Test
+    void editedMigrationIsRejected() throws Exception {
+        try (var database = getDatabase()) {
+            var runner = new MigrationRunner(database);
+
+            runner.migrate(new TestRepository("counters", List.of(
+                    Migration.sql(1, "Create counters", "create table counters (Name VARCHAR(16))"))));
+
+            assertThrows(RepositoryException.class, () -> runner.migrate(new TestRepository("counters", List.of(
+                    Migration.sql(1, "Create counters", "create table counters (Name VARCHAR(32))")))));
+        }
+    }
+
+    @Test
+    void unorderedMigrationsAreRejected() throws Exception {
+        try (var database = getDatabase()) {
+            var runner = new MigrationRunner(database);
+            var repository = new TestRepository("counters", List.of(
+                    Migration.sql(2, "Create counters", "create table counters (Name VARCHAR(16))"),
+                    Migration.sql(1, "Seed counters", "insert into counters values ('a')")));
+
+            assertThrows(RepositoryException.class, () -> runner.migrate(repository));
+        }
+    }
+
+    @Test
+    void failedMigrationLeavesNoPartialChanges() throws Exception {
+        try (var database = getDatabase()) {
+            var runner = new MigrationRunner(database);
+            var repository = new TestRepository("counters", List.of(
+                    Migration.sql(1, "Create counters", "create table counters (Name VARCHAR(16))",
+                            "insert into missing values ('a')")));
+
+            assertThrows(RepositoryException.class, () -> runner.migrate(repository));
+            assertEquals(0, count(database, "select count(*) from sqlite_master where name = 'counters'"));
+            assertEquals(0, count(database, "select count(*) from schema_version"));
+        }
+    }
+
+    @Test
+    void idsAreConvertedToConfiguredFormat() throws Exception {
+        var fileName = "gunlender" + UUID.randomUUID() + ".db";
+        databaseFiles.add(fileName);
+        var gun = new Gun(FAKER.company().name(), FAKER.funnyName().name(), Weapon.WeaponType.PISTOL, "9mm",
+                1.2, 200, 3, 10.0, "");
+
+        try (var database = getDatabase(fileName, IdFormat.TEXT)) {
+            var repository = new GunRepository(database);
+            new MigrationRunner(database).migrate(repository);
+            repository.addGun(gun);
+        }
+
+        for (var format : List.of(IdFormat.BLOB, IdFormat.TEXT)) {
+            try (var database = getDatabase(fileName, format)) {
+                var repository = new GunRepository(database);
+                new MigrationRunner(database).migrate(repository);
+
+                var stored = repository.getGunById(gun.getId());
+                assertTrue(stored.isPresent());
+                assertEquals(gun.getId(), stored.get().getId());
+
+                var type = database.read(connection -> {
+                    try (var statement = connection.createStatement()) {
+                        var rs = statement.executeQuery("select typeof(Id) from guns");
+                        return rs.next() ? rs.getString(1) : null;
+                    }
+                });
+                assertEquals(format.name().toLowerCase(Locale.ROOT), type);
+            }
+        }
+    }
+
+    @Test
+    void idConversionIsSkippedOnceFormatIsRecorded() throws Exception {
+        try (var database = getDatabase()) {
+            var runner = new MigrationRunner(database);
+            var repository = new TestRepository("items", List.of(
+                    Migration.sql(1, "Create items", "create table items (Id VARCHAR(16))")), List.of("Id"));
+
+            runner.migrate(repository);
+            assertEquals(1, count(database, "select count(*) from id_format " +
+                    "where Component = 'items' and Format = 'TEXT'"));
+
+            // Not something the application writes in TEXT mode, it only shows that the table is not scanned again
+            database.write(connection -> {
+                try (var statement = connection.prepareStatement("insert into items values (?)")) {
+                    IdFormat.BLOB.bind(statement, 1, UUID.randomUUID());
+                    return statement.executeUpdate();
+                }
+            });
+            runner.migrate(repository);
+
+            assertEquals(1, count(database, "select count(*) from items where typeof(Id) = 'blob'"));
+        }
+    }
+
+    @Test
+    void idsAreConvertedInBatches() throws Exception {
+        var fileName = "gunlender" + UUID.randomUUID() + ".db";
+        databaseFiles.add(fileName);
+        var repository = new TestRepository("items", List.of(
+                Migration.sql(1, "Create items", "create table items (Id VARCHAR(16))")), List.of("Id"));
+        var rows = 2 * MigrationRunner.ID_CONVERSION_BATCH_SIZE + 1;
+
+        try (var database = getDatabase(fileName, IdFormat.TEXT)) {
+            new MigrationRunner(database).migrate(repository);
+            database.write(connection -> {
+                try (var statement = connection.prepareStatement("insert into items values (?)")) {
+                    for (var i = 0; i < rows; i++) {
+                        IdFormat.TEXT.bind(statement, 1, UUID.randomUUID());
+                        statement.addBatch();
+                    }
+                    return statement.executeBatch().length;
+                }
+            });
+        }
+
+        try (var database = getDatabase(fileName, IdFormat.BLOB)) {
+            new MigrationRunner(database).migrate(repository);
+
+            assertEquals(rows, count(database, "select count(*) from items where typeof(Id) = 'blob'"));
+            assertEquals(1, count(database, "select count(*) from id_format " +
+                    "where Component = 'items' and Format = 'BLOB'"));
+        }
+    }
+
+    @AfterAll
+    static void Cleanup() {
+        for (var db : databaseFiles) {
+            new File(db).deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import gunlender.domain.exceptions.CryptoException;
+import gunlender.domain.services.CryptoService;
+import gunlender.domain.services.PasswordHasher;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHasherTest {
+
+    @Test
+    void hashedPasswordMatchesOnWorkerThread() throws Exception {
+        try (var hasher = new PasswordHasher(new CryptoService("PBKDF2WithHmacSHA1"), 2, 4)) {
+            var hash = hasher.hashPassword("SomePassword").get(10, TimeUnit.SECONDS);
+
+            assertTrue(hasher.comparePasswordAndHash("SomePassword", hash).get(10, TimeUnit.SECONDS));
+            assertFalse(hasher.comparePasswordAndHash("OtherPassword", hash).get(10, TimeUnit.SECONDS));
+            assertEquals(3, hasher.getStats().completed());
+        }
+    }
+
+    @Test
+    void chainedStagesRunOffHashingWorkers() throws Exception {
+        try (var hasher = new PasswordHasher(new CryptoService("PBKDF2WithHmacSHA1"), 1, 4)) {
+            var thread = hasher.hashPassword("SomePassword")
+                    .thenApply(hash -> Thread.currentThread().getName())
+                    .get(10, TimeUnit.SECONDS);
+
+            assertFalse(thread.startsWith("password-hasher-"), thread);
+        }
+    }
+
+    @Test
+    void fullQueueRejectsImmediately() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var blocking = new CryptoService("PBKDF2WithHmacSHA1") {
+            @Override
+            public String hashPassword(String password) throws CryptoException {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.hashPassword(password);
+            }
+        };
+
+        try (var hasher = new PasswordHasher(blocking, 1, 1)) {
+            var running = hasher.hashPassword("first");
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            var queued = hasher.hashPassword("second");
+            var rejected = hasher.hashPassword("third");
+
+            var failure = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+            assertTrue(PasswordHasher.isRejected(failure));
+            assertEquals(1, hasher.getStats().rejected());
+            assertEquals(1, hasher.getStats().queueDepth());
+
+            release.countDown();
+            assertFalse(running.get(10, TimeUnit.SECONDS).isEmpty());
+            assertFalse(queued.get(10, TimeUnit.SECONDS).isEmpty());
+        }
+    }
+}
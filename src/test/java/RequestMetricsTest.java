@@ -0,0 +1,58 @@
+import gunlender.infrastructure.metrics.MetricsRegistry;
+import gunlender.server.RequestMetrics;
+import io.javalin.Javalin;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestMetricsTest {
+
+    @Test
+    void requestsMatchingNoRouteShareOneLabel() throws Exception {
+        // Javalin reports unmatched requests differently depending on whether after handlers exist
+        for (var withAfterHandler : new boolean[]{false, true}) {
+            var text = scrapeAfterRequests(withAfterHandler);
+
+            assertTrue(text.contains("http_requests_total{method=\"GET\",route=\"gun/{gun-id}\",status=\"200\"} 2\n"),
+                    text);
+            assertTrue(text.contains("http_requests_total{method=\"GET\",route=\"unmatched\",status=\"404\"} 2\n"),
+                    text);
+            assertTrue(text.contains("http_requests_total{method=\"DELETE\",route=\"unmatched\",status=\"404\"} 1\n"),
+                    text);
+            assertFalse(text.contains("No handler"), text);
+        }
+    }
+
+    private String scrapeAfterRequests(boolean withAfterHandler) throws Exception {
+        var registry = new MetricsRegistry();
+        var requestMetrics = registry.register(new RequestMetrics());
+        var app = Javalin.create(config -> config.requestLogger.http(requestMetrics::record));
+        requestMetrics.track(app);
+        if (withAfterHandler) {
+            app.after(ctx -> ctx.header("X-After", "1"));
+        }
+        app.get("gun/{gun-id}", ctx -> ctx.result("gun"));
+        app.start(0);
+
+        try {
+            var http = HttpClient.newHttpClient();
+            var baseUri = "http://localhost:" + app.port() + "/";
+
+            for (var path : new String[]{"gun/1", "gun/2", "no/such/path", "other"}) {
+                http.send(HttpRequest.newBuilder(URI.create(baseUri + path)).GET().build(),
+                        HttpResponse.BodyHandlers.discarding());
+            }
+            http.send(HttpRequest.newBuilder(URI.create(baseUri + "gun/1")).DELETE().build(),
+                    HttpResponse.BodyHandlers.discarding());
+        } finally {
+            app.stop();
+        }
+
+        return registry.scrape();
+    }
+}
@@ -5,6 +5,7 @@ import gunlender.infrastructure.database.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
 import static org.junit.jupiter.api.Assertions.*;
@@ -118,6 +119,24 @@ class UserRepositoryTest extends BaseRepositoryTest {
 
         assertThrows(RepositoryException.class,() -> userRepo.addUser(user2));
     }
+    @Test
+    void columnsMatchTableAndRoundTrip() throws Exception {
+        var userRepo = getRepository();
+        var user = new User(firstName(), lastName(), emailAddress(), phoneNumber(), passwordHash(), AuthManager.Role.ADMINISTRATOR);
+        userRepo.addUser(user);
+
+        assertEquals(List.of(User.COLUMNS.split(", ")), tableColumns("users"));
+
+        var stored = userRepo.getUserById(user.getId()).orElseThrow();
+        assertEquals(user.getId(), stored.getId());
+        assertEquals(user.getFirstName(), stored.getFirstName());
+        assertEquals(user.getLastName(), stored.getLastName());
+        assertEquals(user.getEmail(), stored.getEmail());
+        assertEquals(user.getPasswordHash(), stored.getPasswordHash());
+        assertEquals(user.getPhoneNumber(), stored.getPhoneNumber());
+        assertEquals(user.getAccountType(), stored.getAccountType());
+    }
+
     private String firstName() {
         return FAKER.name().firstName();
     }